@@ -0,0 +1,194 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.*;
+
+// Листинг байткода (asm-util Textifier) + пул констант.
+// Строится за миллисекунды и отдается страницами, чтобы редактор мог показывать его по частям.
+public class BytecodeListing {
+
+    // Примерный размер страницы; метод целиком всегда остается на одной странице
+    public static final int PAGE_LINES = 400;
+
+    public static List<String> render(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        List<String> pages = new ArrayList<>();
+        pages.add(renderConstantPool(reader));
+
+        Textifier textifier = new Textifier();
+        reader.accept(new TraceClassVisitor(null, textifier, null), ClassReader.SKIP_FRAMES);
+
+        StringBuilder page = new StringBuilder();
+        int pageLines = 0;
+        for (Object element : textifier.getText()) {
+            StringBuilder part = new StringBuilder();
+            flatten(element, part);
+            int lines = countLines(part);
+
+            if (pageLines > 0 && pageLines + lines > PAGE_LINES) {
+                pages.add(page.toString());
+                page.setLength(0);
+                pageLines = 0;
+            }
+            page.append(part);
+            pageLines += lines;
+        }
+        if (page.length() > 0) {
+            pages.add(page.toString());
+        }
+
+        return pages;
+    }
+
+    public static String renderText(byte[] classBytes) {
+        return String.join("", render(classBytes));
+    }
+
+    private static void flatten(Object element, StringBuilder out) {
+        if (element instanceof List) {
+            for (Object child : (List<?>) element) {
+                flatten(child, out);
+            }
+        } else if (element != null) {
+            out.append(element);
+        }
+    }
+
+    private static int countLines(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    // ========== ПУЛ КОНСТАНТ ==========
+
+    private static String renderConstantPool(ClassReader reader) {
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        char[] buf = new char[Math.max(reader.getMaxStringLength(), 16)];
+        int count = reader.getItemCount();
+
+        out.println("// Пул констант (" + (count - 1) + " записей)");
+        for (int i = 1; i < count; i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) {
+                // Вторая половина Long/Double
+                continue;
+            }
+
+            String entry;
+            try {
+                entry = describeConstant(reader, i, offset, buf);
+            } catch (RuntimeException e) {
+                entry = "<не удалось прочитать: " + e.getMessage() + ">";
+            }
+            out.printf("//   #%-5d = %s%n", i, entry);
+        }
+        out.println();
+        out.flush();
+        return sw.toString();
+    }
+
+    private static String describeConstant(ClassReader reader, int index, int offset, char[] buf) {
+        int tag = reader.readByte(offset - 1);
+        switch (tag) {
+            case 1:
+                return "Utf8               " + quote(readUtf8Entry(reader, offset));
+            case 3:
+                return "Integer            " + reader.readInt(offset);
+            case 4:
+                return "Float              " + Float.intBitsToFloat(reader.readInt(offset)) + "f";
+            case 5:
+                return "Long               " + reader.readLong(offset) + "L";
+            case 6:
+                return "Double             " + Double.longBitsToDouble(reader.readLong(offset)) + "d";
+            case 7:
+                return "Class              " + reader.readUTF8(offset, buf);
+            case 8:
+                return "String             " + quote(reader.readUTF8(offset, buf));
+            case 9:
+                return "Fieldref           " + describeMember(reader, offset, buf);
+            case 10:
+                return "Methodref          " + describeMember(reader, offset, buf);
+            case 11:
+                return "InterfaceMethodref " + describeMember(reader, offset, buf);
+            case 12:
+                return "NameAndType        " + reader.readUTF8(offset, buf) + ":" + reader.readUTF8(offset + 2, buf);
+            case 15:
+                return "MethodHandle       " + reader.readConst(index, buf);
+            case 16:
+                return "MethodType         " + reader.readUTF8(offset, buf);
+            case 17:
+                return "Dynamic            " + describeDynamic(reader, offset, buf);
+            case 18:
+                return "InvokeDynamic      " + describeDynamic(reader, offset, buf);
+            case 19:
+                return "Module             " + reader.readUTF8(offset, buf);
+            case 20:
+                return "Package            " + reader.readUTF8(offset, buf);
+            default:
+                return "<неизвестный тег " + tag + ">";
+        }
+    }
+
+    private static String describeMember(ClassReader reader, int offset, char[] buf) {
+        String owner = reader.readClass(offset, buf);
+        int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+        return owner + "." + reader.readUTF8(nameAndType, buf) + ":" + reader.readUTF8(nameAndType + 2, buf);
+    }
+
+    private static String describeDynamic(ClassReader reader, int offset, char[] buf) {
+        int bootstrap = reader.readUnsignedShort(offset);
+        int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+        return "bsm#" + bootstrap + " " + reader.readUTF8(nameAndType, buf) + ":" + reader.readUTF8(nameAndType + 2, buf);
+    }
+
+    // Modified UTF-8 из class-файла (у ClassReader нет публичного метода для самой записи Utf8)
+    private static String readUtf8Entry(ClassReader reader, int offset) {
+        int length = reader.readUnsignedShort(offset);
+        int pos = offset + 2;
+        int end = pos + length;
+        StringBuilder sb = new StringBuilder(length);
+        while (pos < end) {
+            int c = reader.readByte(pos++);
+            if ((c & 0x80) == 0) {
+                sb.append((char) c);
+            } else if ((c & 0xE0) == 0xC0) {
+                sb.append((char) (((c & 0x1F) << 6) + (reader.readByte(pos++) & 0x3F)));
+            } else {
+                int c2 = reader.readByte(pos++);
+                int c3 = reader.readByte(pos++);
+                sb.append((char) (((c & 0xF) << 12) + ((c2 & 0x3F) << 6) + (c3 & 0x3F)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
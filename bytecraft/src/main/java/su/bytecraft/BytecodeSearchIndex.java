@@ -0,0 +1,546 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+// Поисковый индекс по байткоду всего JAR, строится одним проходом ASM:
+// строковые константы, имена и дескрипторы классов/методов/полей, ссылки на чужие члены и типы.
+// Каждый уникальный текст хранится один раз, к нему - список вхождений (класс, вид, контекст).
+// Готовый индекс - один плоский буфер (см. layout ниже): его можно записать на диск и потом
+// отобразить в память как есть, без десериализации (SearchIndexStore).
+public class BytecodeSearchIndex {
+
+    public enum Kind {
+        STRING("строка"),
+        CLASS("класс"),
+        FIELD("поле"),
+        METHOD("метод"),
+        FIELD_REF("обращение к полю"),
+        METHOD_REF("вызов"),
+        TYPE_REF("тип");
+
+        public final String title;
+
+        Kind(String title) {
+            this.title = title;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    // Формат буфера (little-endian):
+    //   заголовок: magic, версия, длина JAR, дата JAR, классов, терминов, int-ов вхождений, символов, длина пути
+    //   int[классов]        CRC записи класса в JAR (манифест для точечного обновления)
+    //   int[классов + 1]    начала имен классов в таблице символов
+    //   int[терминов + 1]   начала текстов терминов в таблице символов
+    //   int[терминов + 1]   начала вхождений терминов (равные соседние - вхождений нет)
+    //   int[...]            вхождения: тройки (индекс класса, вид, id термина-контекста или -1)
+    //   char[...]           путь к JAR, имена классов, тексты терминов
+    private static final int MAGIC = 0x42435349;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+
+    private final ByteBuffer buffer;
+    private final File jarFile;
+    private final long jarLength;
+    private final long jarModified;
+    private final int classCount;
+    private final int termCount;
+
+    private final IntBuffer classCrcs;
+    private final IntBuffer classStarts;
+    private final IntBuffer termStarts;
+    private final IntBuffer postingStarts;
+    private final IntBuffer postings;
+    private final CharBuffer chars;
+
+    private BytecodeSearchIndex(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("не индекс ByteCraft");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("устаревший формат индекса: " + buffer.getInt(4));
+        }
+        this.jarLength = buffer.getLong(8);
+        this.jarModified = buffer.getLong(16);
+        this.classCount = buffer.getInt(24);
+        this.termCount = buffer.getInt(28);
+        int postingInts = buffer.getInt(32);
+        int charCount = buffer.getInt(36);
+        int pathLength = buffer.getInt(40);
+
+        int offset = HEADER_BYTES;
+        this.classCrcs = ints(offset, classCount);
+        offset += classCount * 4;
+        this.classStarts = ints(offset, classCount + 1);
+        offset += (classCount + 1) * 4;
+        this.termStarts = ints(offset, termCount + 1);
+        offset += (termCount + 1) * 4;
+        this.postingStarts = ints(offset, termCount + 1);
+        offset += (termCount + 1) * 4;
+        this.postings = ints(offset, postingInts);
+        offset += postingInts * 4;
+        if ((long) offset + charCount * 2L != buffer.capacity()) {
+            throw new IllegalArgumentException("поврежденный индекс");
+        }
+        this.chars = this.buffer.duplicate().position(offset).slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+        this.jarFile = new File(chars.subSequence(0, pathLength).toString());
+    }
+
+    private IntBuffer ints(int offset, int count) {
+        return buffer.duplicate().position(offset).limit(offset + count * 4).slice()
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    // Индекс из буфера (отображенного файла); IllegalArgumentException - буфер не годится
+    static BytecodeSearchIndex fromBuffer(ByteBuffer buffer) {
+        return new BytecodeSearchIndex(buffer);
+    }
+
+    // Сохраненный индекс, если JAR не менялся; иначе - обновление только измененных классов или полная индексация
+    public static BytecodeSearchIndex open(File jarFile, ProgressListener listener) throws IOException {
+        SearchIndexStore store = SearchIndexStore.getDefault();
+        BytecodeSearchIndex stored = store.load(jarFile);
+        if (stored != null && stored.isFor(jarFile)) {
+            System.out.println("🗂 Индекс байткода " + jarFile.getName() + " загружен с диска: " +
+                    stored.classCount + " классов, " + stored.termCount + " терминов");
+            return stored;
+        }
+        BytecodeSearchIndex index = stored != null ? refresh(stored, jarFile, listener) : build(jarFile, listener);
+        return store.save(index);
+    }
+
+    public static BytecodeSearchIndex build(File jarFile, ProgressListener listener) throws IOException {
+        return refresh(null, jarFile, listener);
+    }
+
+    // Классы с тем же CRC переносятся из старого индекса без разбора байткода, остальные индексируются заново
+    private static BytecodeSearchIndex refresh(BytecodeSearchIndex base, File jarFile,
+                                               ProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Builder builder = new Builder();
+        int[] reusedAs = new int[base != null ? base.classCount : 0];
+        Arrays.fill(reusedAs, -1);
+        Map<String, Integer> baseClasses = new HashMap<>();
+        for (int i = 0; i < reusedAs.length; i++) {
+            baseClasses.put(base.getClassName(i), i);
+        }
+
+        try (JarFile jar = new JarFile(jarFile)) {
+            List<JarEntry> changed = new ArrayList<>();
+            List<Integer> changedIndexes = new ArrayList<>();
+            Enumeration<JarEntry> all = jar.entries();
+            while (all.hasMoreElements()) {
+                JarEntry entry = all.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                int crc = (int) entry.getCrc();
+                int classIndex = builder.addClass(entry.getName(), crc);
+                Integer old = baseClasses.get(entry.getName());
+                if (old != null && entry.getCrc() != -1 && base.classCrcs.get(old) == crc) {
+                    reusedAs[old] = classIndex;
+                } else {
+                    changed.add(entry);
+                    changedIndexes.add(classIndex);
+                }
+            }
+
+            if (base != null) {
+                builder.copyFrom(base, reusedAs);
+            }
+
+            for (int i = 0; i < changed.size(); i++) {
+                JarEntry entry = changed.get(i);
+                try (InputStream is = jar.getInputStream(entry)) {
+                    builder.indexClass(changedIndexes.get(i), is.readAllBytes());
+                } catch (RuntimeException e) {
+                    // Битый или обфусцированный до невалидности класс не должен ломать весь индекс
+                    System.err.println("⚠️  Пропущен при индексации: " + entry.getName() + " (" + e + ")");
+                }
+                if (listener != null && (i % 64 == 0 || i == changed.size() - 1)) {
+                    listener.onProgress(i + 1, changed.size());
+                }
+            }
+
+            BytecodeSearchIndex index = new BytecodeSearchIndex(builder.toBuffer(jarFile.getAbsoluteFile()));
+            System.out.println("🗂 Индекс байткода " + jarFile.getName() + ": " + index.classCount +
+                    " классов (заново " + changed.size() + "), " + index.termCount + " терминов, " +
+                    (System.currentTimeMillis() - startTime) + " мс");
+            return index;
+        }
+    }
+
+    // Индекс все еще описывает этот файл (тот же путь, размер и дата изменения)
+    public boolean isFor(File file) {
+        File other = file.getAbsoluteFile();
+        return jarFile.equals(other) && jarLength == other.length() && jarModified == other.lastModified();
+    }
+
+    public File getJarFile() {
+        return jarFile;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    // Совпадения, сгруппированные по классам (в порядке классов в JAR)
+    public Map<String, List<Hit>> search(Pattern pattern, Set<Kind> kinds) {
+        int[] matched = new int[16];
+        int count = 0;
+        for (int termId = 0; termId < termCount; termId++) {
+            if (hasPostings(termId) && pattern.matcher(termText(termId)).find()) {
+                if (count == matched.length) {
+                    matched = Arrays.copyOf(matched, count * 2);
+                }
+                matched[count++] = termId;
+            }
+        }
+        return hitsFor(matched, count, kinds);
+    }
+
+    // Вхождения уже отобранных терминов (их текст проверяет вызывающий - например, общий словарь папки)
+    Map<String, List<Hit>> hitsFor(int[] matched, int count, Set<Kind> kinds) {
+        Kind[] allKinds = Kind.values();
+        Map<Integer, List<Hit>> byClass = new TreeMap<>();
+
+        for (int t = 0; t < count; t++) {
+            int termId = matched[t];
+            String text = null;
+            for (int i = postingStarts.get(termId); i < postingStarts.get(termId + 1); i += 3) {
+                Kind kind = allKinds[postings.get(i + 1)];
+                if (!kinds.contains(kind)) {
+                    continue;
+                }
+                if (text == null) {
+                    text = getTerm(termId);
+                }
+                int classIndex = postings.get(i);
+                int context = postings.get(i + 2);
+                byClass.computeIfAbsent(classIndex, k -> new ArrayList<>())
+                        .add(new Hit(getClassName(classIndex), kind, text, context >= 0 ? getTerm(context) : null));
+            }
+        }
+
+        Map<String, List<Hit>> result = new LinkedHashMap<>();
+        byClass.forEach((classIndex, hits) -> result.put(getClassName(classIndex), hits));
+        return result;
+    }
+
+    String getTerm(int termId) {
+        return termText(termId).toString();
+    }
+
+    // Текст прямо из буфера, без копирования - регулярке этого достаточно
+    private CharSequence termText(int termId) {
+        return chars.subSequence(termStarts.get(termId), termStarts.get(termId + 1));
+    }
+
+    private String getClassName(int classIndex) {
+        return chars.subSequence(classStarts.get(classIndex), classStarts.get(classIndex + 1)).toString();
+    }
+
+    // false - термин только контекст (имя метода), своих вхождений нет
+    boolean hasPostings(int termId) {
+        return postingStarts.get(termId) != postingStarts.get(termId + 1);
+    }
+
+    // Буфер целиком (для записи на диск)
+    ByteBuffer getBuffer() {
+        return buffer.duplicate().clear();
+    }
+
+    // ========== ИНДЕКСАЦИЯ ==========
+
+    private static class Builder {
+        private final List<String> classes = new ArrayList<>();
+        private final IntArray classCrcs = new IntArray();
+        private final Map<String, Integer> termIds = new HashMap<>();
+        private final List<String> terms = new ArrayList<>();
+        private final List<IntArray> postings = new ArrayList<>();
+
+        int addClass(String entryName, int crc) {
+            classes.add(entryName);
+            classCrcs.add(crc);
+            return classes.size() - 1;
+        }
+
+        // Вхождения неизмененных классов старого индекса (reusedAs: старый индекс класса -> новый или -1)
+        void copyFrom(BytecodeSearchIndex base, int[] reusedAs) {
+            String[] texts = new String[base.termCount];
+            for (int termId = 0; termId < base.termCount; termId++) {
+                for (int i = base.postingStarts.get(termId); i < base.postingStarts.get(termId + 1); i += 3) {
+                    int classIndex = reusedAs[base.postings.get(i)];
+                    if (classIndex < 0) {
+                        continue;
+                    }
+                    if (texts[termId] == null) {
+                        texts[termId] = base.getTerm(termId);
+                    }
+                    int context = base.postings.get(i + 2);
+                    if (context >= 0 && texts[context] == null) {
+                        texts[context] = base.getTerm(context);
+                    }
+                    add(texts[termId], classIndex, base.postings.get(i + 1), context >= 0 ? texts[context] : null);
+                }
+            }
+        }
+
+        void indexClass(int classIndex, byte[] bytes) {
+            ClassReader reader = new ClassReader(bytes);
+            String self = reader.getClassName();
+            Set<String> types = new HashSet<>();
+
+            // Все CONSTANT_Class пула - это и есть "импорты" класса на уровне байткода
+            char[] buf = new char[Math.max(reader.getMaxStringLength(), 16)];
+            for (int i = 1; i < reader.getItemCount(); i++) {
+                int offset = reader.getItem(i);
+                if (offset != 0 && reader.readByte(offset - 1) == 7) {
+                    addType(types, Type.getObjectType(reader.readUTF8(offset, buf)));
+                }
+            }
+
+            reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(int version, int access, String name, String signature,
+                                  String superName, String[] interfaces) {
+                    add(dotted(name), classIndex, Kind.CLASS, null);
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor,
+                                               String signature, Object value) {
+                    String member = name + ":" + dotted(descriptor);
+                    add(member, classIndex, Kind.FIELD, null);
+                    addType(types, Type.getType(descriptor));
+                    if (value instanceof String) {
+                        add((String) value, classIndex, Kind.STRING, member);
+                    }
+                    return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                                 String signature, String[] exceptions) {
+                    String member = name + dotted(descriptor);
+                    add(member, classIndex, Kind.METHOD, null);
+                    Type methodType = Type.getMethodType(descriptor);
+                    addType(types, methodType.getReturnType());
+                    for (Type argument : methodType.getArgumentTypes()) {
+                        addType(types, argument);
+                    }
+
+                    return new MethodVisitor(Opcodes.ASM9) {
+                        @Override
+                        public void visitLdcInsn(Object value) {
+                            if (value instanceof String) {
+                                add((String) value, classIndex, Kind.STRING, member);
+                            }
+                        }
+
+                        @Override
+                        public void visitFieldInsn(int opcode, String owner, String fieldName, String fieldDescriptor) {
+                            if (!owner.equals(self)) {
+                                add(dotted(owner) + "." + fieldName + ":" + dotted(fieldDescriptor),
+                                        classIndex, Kind.FIELD_REF, member);
+                            }
+                        }
+
+                        @Override
+                        public void visitMethodInsn(int opcode, String owner, String methodName,
+                                                    String methodDescriptor, boolean isInterface) {
+                            if (!owner.equals(self)) {
+                                add(dotted(owner) + "." + methodName + dotted(methodDescriptor),
+                                        classIndex, Kind.METHOD_REF, member);
+                            }
+                        }
+
+                        @Override
+                        public void visitInvokeDynamicInsn(String indyName, String indyDescriptor,
+                                                           Handle bootstrap, Object... arguments) {
+                            for (Object argument : arguments) {
+                                if (argument instanceof String) {
+                                    // Рецепт склейки строк (javac 9+): константы разделены \1 и \2
+                                    for (String piece : ((String) argument).split("[\u0001\u0002]")) {
+                                        if (!piece.isEmpty()) {
+                                            add(piece, classIndex, Kind.STRING, member);
+                                        }
+                                    }
+                                } else if (argument instanceof Handle) {
+                                    Handle handle = (Handle) argument;
+                                    if (!handle.getOwner().equals(self)) {
+                                        add(dotted(handle.getOwner()) + "." + handle.getName() + dotted(handle.getDesc()),
+                                                classIndex, Kind.METHOD_REF, member);
+                                    }
+                                }
+                            }
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+            types.remove(dotted(self));
+            for (String type : types) {
+                add(type, classIndex, Kind.TYPE_REF, null);
+            }
+        }
+
+        private void add(String text, int classIndex, Kind kind, String context) {
+            add(text, classIndex, kind.ordinal(), context);
+        }
+
+        private void add(String text, int classIndex, int kind, String context) {
+            int termId = termId(text);
+            int contextId = context != null ? termId(context) : -1;
+            IntArray list = postings.get(termId);
+            if (list == null) {
+                list = new IntArray();
+                postings.set(termId, list);
+            }
+            list.add(classIndex);
+            list.add(kind);
+            list.add(contextId);
+        }
+
+        private int termId(String text) {
+            Integer id = termIds.get(text);
+            if (id == null) {
+                id = terms.size();
+                termIds.put(text, id);
+                terms.add(text);
+                // Контексты (имена методов) - тоже термины, но без собственных вхождений
+                postings.add(null);
+            }
+            return id;
+        }
+
+        ByteBuffer toBuffer(File jarFile) {
+            String path = jarFile.getPath();
+            long charCount = path.length();
+            for (String name : classes) {
+                charCount += name.length();
+            }
+            for (String term : terms) {
+                charCount += term.length();
+            }
+            long postingInts = 0;
+            for (IntArray list : postings) {
+                postingInts += list != null ? list.size : 0;
+            }
+            long size = HEADER_BYTES + 4L * (classes.size() * 2L + 1 + (terms.size() + 1) * 2L + postingInts) +
+                    2 * charCount;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Индекс слишком велик: " + size + " байт");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                    .putLong(jarFile.length()).putLong(jarFile.lastModified())
+                    .putInt(classes.size()).putInt(terms.size())
+                    .putInt((int) postingInts).putInt((int) charCount).putInt(path.length()).putInt(0);
+
+            for (int i = 0; i < classes.size(); i++) {
+                buffer.putInt(classCrcs.data[i]);
+            }
+            int charOffset = path.length();
+            for (String name : classes) {
+                buffer.putInt(charOffset);
+                charOffset += name.length();
+            }
+            buffer.putInt(charOffset);
+            for (String term : terms) {
+                buffer.putInt(charOffset);
+                charOffset += term.length();
+            }
+            buffer.putInt(charOffset);
+            int postingOffset = 0;
+            for (IntArray list : postings) {
+                buffer.putInt(postingOffset);
+                postingOffset += list != null ? list.size : 0;
+            }
+            buffer.putInt(postingOffset);
+            for (IntArray list : postings) {
+                if (list != null) {
+                    for (int i = 0; i < list.size; i++) {
+                        buffer.putInt(list.data[i]);
+                    }
+                }
+            }
+
+            CharBuffer out = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+            out.put(path);
+            for (String name : classes) {
+                out.put(name);
+            }
+            for (String term : terms) {
+                out.put(term);
+            }
+            return buffer.clear();
+        }
+    }
+
+    private static void addType(Set<String> types, Type type) {
+        while (type.getSort() == Type.ARRAY) {
+            type = type.getElementType();
+        }
+        if (type.getSort() == Type.OBJECT) {
+            types.add(type.getClassName());
+        }
+    }
+
+    private static String dotted(String internal) {
+        return internal.replace('/', '.');
+    }
+
+    private static class IntArray {
+        int[] data = new int[6];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    public static class Hit {
+        public final String className;
+        public final Kind kind;
+        public final String text;
+        // Метод или поле, где найдено вхождение (null - уровень класса)
+        public final String context;
+
+        Hit(String className, Kind kind, String text, String context) {
+            this.className = className;
+            this.kind = kind;
+            this.text = text;
+            this.context = context;
+        }
+
+        @Override
+        public String toString() {
+            String shown = kind == Kind.STRING ? "\"" + text + "\"" : text;
+            return "[" + kind.title + "] " + shown + (context != null ? "  в " + context : "");
+        }
+    }
+}
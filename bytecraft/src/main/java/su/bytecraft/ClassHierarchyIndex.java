@@ -0,0 +1,287 @@
+package su.bytecraft;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// Иерархия типов плагина вместе с Bukkit/Spigot API: супертипы, подтипы, реализации.
+// Читаются только заголовки классов (ClassReader без accept - тела методов не разбираются),
+// поэтому даже API на несколько тысяч классов индексируется за доли секунды.
+public class ClassHierarchyIndex {
+
+    private final File jarFile;
+    private final long jarLength;
+    private final long jarModified;
+
+    private final Map<String, TypeInfo> types = new HashMap<>();
+    // Прямые наследники: супертип -> подклассы, подынтерфейсы и реализующие классы
+    private final Map<String, List<String>> directSubtypes = new HashMap<>();
+    // Типы JDK подгружаются по требованию, когда до них доходит цепочка супертипов
+    private final Map<String, TypeInfo> jdkTypes = new ConcurrentHashMap<>();
+
+    private ClassHierarchyIndex(File jarFile) {
+        this.jarFile = jarFile.getAbsoluteFile();
+        this.jarLength = this.jarFile.length();
+        this.jarModified = this.jarFile.lastModified();
+    }
+
+    // Плагин + API той версии Minecraft, под которую он собран (из ресурсов ByteCraft)
+    public static ClassHierarchyIndex build(File jarFile) throws IOException {
+        VersionUtils.McVersion mcVersion = PluginVersionDetector.detectMcVersion(jarFile);
+        List<File> apiJars = mcVersion != null
+                ? new JavaCompiler().findBukkitDependenciesFromResources(mcVersion)
+                : Collections.emptyList();
+        return build(jarFile, apiJars);
+    }
+
+    public static ClassHierarchyIndex build(File jarFile, List<File> libraries) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ClassHierarchyIndex index = new ClassHierarchyIndex(jarFile);
+
+        // Сначала библиотеки: одноименные (затененные) классы плагина их перекрывают
+        for (File library : libraries) {
+            try {
+                index.readJar(library, false);
+            } catch (IOException e) {
+                System.err.println("⚠️  Не удалось прочитать " + library.getName() + ": " + e.getMessage());
+            }
+        }
+        index.readJar(jarFile, true);
+        index.linkSubtypes();
+
+        System.out.println("🧬 Иерархия " + jarFile.getName() + ": " + index.types.size() + " типов (" +
+                libraries.size() + " библиотек), " + (System.currentTimeMillis() - startTime) + " мс");
+        return index;
+    }
+
+    public boolean isFor(File file) {
+        File other = file.getAbsoluteFile();
+        return jarFile.equals(other) && jarLength == other.length() && jarModified == other.lastModified();
+    }
+
+    public int getTypeCount() {
+        return types.size();
+    }
+
+    // Тип по internal name ("a/b/C"); null - тип не встречался ни в плагине, ни в API, ни в JDK
+    public TypeInfo getType(String internalName) {
+        TypeInfo type = types.get(internalName);
+        return type != null ? type : jdkType(internalName);
+    }
+
+    // Принимает "a.b.C", "a/b/C" или простое имя ("C"); классы плагина важнее классов API
+    public String resolveName(String text) {
+        String name = text.trim().replace('.', '/');
+        if (name.endsWith("/class")) {
+            name = name.substring(0, name.length() - "/class".length());
+        }
+        if (getType(name) != null) {
+            return name;
+        }
+        String found = null;
+        for (TypeInfo type : types.values()) {
+            if (type.getSimpleName().equals(name) && (found == null || type.inJar)) {
+                found = type.name;
+                if (type.inJar) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    // Все супертипы: сначала цепочка суперклассов, затем интерфейсы в ширину
+    public List<TypeInfo> getSupertypes(String internalName) {
+        List<TypeInfo> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(internalName);
+
+        TypeInfo type = getType(internalName);
+        Deque<String> interfaces = new ArrayDeque<>();
+        while (type != null) {
+            interfaces.addAll(type.interfaces);
+            String superName = type.superName;
+            if (superName == null || !seen.add(superName)) {
+                break;
+            }
+            type = getType(superName);
+            result.add(type != null ? type : TypeInfo.unresolved(superName));
+        }
+        while (!interfaces.isEmpty()) {
+            String name = interfaces.poll();
+            if (!seen.add(name)) {
+                continue;
+            }
+            TypeInfo itf = getType(name);
+            if (itf != null) {
+                result.add(itf);
+                interfaces.addAll(itf.interfaces);
+            } else {
+                result.add(TypeInfo.unresolved(name));
+            }
+        }
+        return result;
+    }
+
+    public List<TypeInfo> getDirectSubtypes(String internalName) {
+        List<TypeInfo> result = new ArrayList<>();
+        for (String name : directSubtypes.getOrDefault(internalName, Collections.emptyList())) {
+            result.add(types.get(name));
+        }
+        return result;
+    }
+
+    // Все наследники в ширину (подклассы, подынтерфейсы, реализации)
+    public List<TypeInfo> getSubtypes(String internalName) {
+        List<TypeInfo> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(internalName);
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(internalName);
+        while (!queue.isEmpty()) {
+            for (String name : directSubtypes.getOrDefault(queue.poll(), Collections.emptyList())) {
+                if (seen.add(name)) {
+                    result.add(types.get(name));
+                    queue.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Конкретные классы (не интерфейсы и не абстрактные), которые можно подставить вместо типа
+    public List<TypeInfo> getImplementations(String internalName) {
+        List<TypeInfo> result = new ArrayList<>();
+        for (TypeInfo type : getSubtypes(internalName)) {
+            if (!type.isInterface() && !type.isAbstract()) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    public boolean isSubtypeOf(String internalName, String supertype) {
+        if (internalName.equals(supertype)) {
+            return true;
+        }
+        for (TypeInfo type : getSupertypes(internalName)) {
+            if (type.name.equals(supertype)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== ПОСТРОЕНИЕ ==========
+
+    private void readJar(File file, boolean inJar) throws IOException {
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String entryName = entry.getName();
+                if (entry.isDirectory() || !entryName.endsWith(".class") ||
+                        entryName.endsWith("module-info.class") || entryName.startsWith("META-INF/")) {
+                    continue;
+                }
+                try (InputStream is = jar.getInputStream(entry)) {
+                    TypeInfo type = readHeader(is.readAllBytes(), inJar);
+                    types.put(type.name, type);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️  Пропущен при построении иерархии: " + entryName + " (" + e + ")");
+                }
+            }
+        }
+    }
+
+    private void linkSubtypes() {
+        for (TypeInfo type : types.values()) {
+            if (type.superName != null) {
+                directSubtypes.computeIfAbsent(type.superName, k -> new ArrayList<>()).add(type.name);
+            }
+            for (String itf : type.interfaces) {
+                directSubtypes.computeIfAbsent(itf, k -> new ArrayList<>()).add(type.name);
+            }
+        }
+        // Классы плагина - первыми, дальше по алфавиту
+        Comparator<String> order = Comparator.comparing((String name) -> !types.get(name).inJar)
+                .thenComparing(Comparator.naturalOrder());
+        for (List<String> subtypes : directSubtypes.values()) {
+            subtypes.sort(order);
+        }
+    }
+
+    private TypeInfo jdkType(String internalName) {
+        TypeInfo cached = jdkTypes.get(internalName);
+        if (cached != null) {
+            return cached.known ? cached : null;
+        }
+        TypeInfo type = TypeInfo.unresolved(internalName);
+        // Platform loader видит только модули JDK, а не classpath самого ByteCraft (ASM, CFR, JavaFX)
+        try (InputStream is = ClassLoader.getPlatformClassLoader().getResourceAsStream(internalName + ".class")) {
+            if (is != null) {
+                type = readHeader(is.readAllBytes(), false);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Нечитаемый класс JDK считаем неизвестным
+        }
+        jdkTypes.put(internalName, type);
+        return type.known ? type : null;
+    }
+
+    private static TypeInfo readHeader(byte[] bytes, boolean inJar) {
+        ClassReader reader = new ClassReader(bytes);
+        return new TypeInfo(reader.getClassName(), reader.getSuperName(),
+                Arrays.asList(reader.getInterfaces()), reader.getAccess(), inJar, true);
+    }
+
+    public static class TypeInfo {
+        public final String name;
+        public final String superName;
+        public final List<String> interfaces;
+        public final int access;
+        // true - класс объявлен в самом плагине, false - API/JDK
+        public final boolean inJar;
+        // false - на тип есть ссылка, но его байткода нет
+        public final boolean known;
+
+        TypeInfo(String name, String superName, List<String> interfaces, int access, boolean inJar, boolean known) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.access = access;
+            this.inJar = inJar;
+            this.known = known;
+        }
+
+        static TypeInfo unresolved(String name) {
+            return new TypeInfo(name, null, Collections.emptyList(), 0, false, false);
+        }
+
+        public boolean isInterface() {
+            return (access & Opcodes.ACC_INTERFACE) != 0;
+        }
+
+        public boolean isAbstract() {
+            return (access & Opcodes.ACC_ABSTRACT) != 0;
+        }
+
+        public String getSimpleName() {
+            return name.substring(name.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String toString() {
+            String kind = !known ? "❔" : isInterface() ? "🔌" : isAbstract() ? "🧱" : "📄";
+            String origin = inJar ? "" : known ? "  (библиотека)" : "  (не найден)";
+            return kind + " " + name.replace('/', '.') + origin;
+        }
+    }
+}
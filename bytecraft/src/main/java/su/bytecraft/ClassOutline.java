@@ -0,0 +1,107 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+// Быстрая сводка класса без декомпиляции: заголовок, поля и сигнатуры методов.
+// Читает только заголовки (SKIP_CODE), поэтому работает за миллисекунды даже на огромных классах.
+public class ClassOutline {
+
+    public static String render(byte[] classBytes) {
+        StringBuilder sb = new StringBuilder();
+        List<String> fields = new ArrayList<>();
+        List<String> methods = new ArrayList<>();
+        String[] header = new String[1];
+
+        ClassReader reader = new ClassReader(classBytes);
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature,
+                              String superName, String[] interfaces) {
+                StringBuilder h = new StringBuilder();
+                // ACC_SUPER совпадает с ACC_SYNCHRONIZED, а abstract у интерфейсов подразумевается
+                int shown = access & ~Opcodes.ACC_SYNCHRONIZED;
+                if ((access & Opcodes.ACC_INTERFACE) != 0) {
+                    shown &= ~Opcodes.ACC_ABSTRACT;
+                }
+                h.append(modifiers(shown, Modifier.classModifiers()));
+                if ((access & Opcodes.ACC_ANNOTATION) != 0) {
+                    h.append("@interface ");
+                } else if ((access & Opcodes.ACC_INTERFACE) != 0) {
+                    h.append("interface ");
+                } else if ((access & Opcodes.ACC_ENUM) != 0) {
+                    h.append("enum ");
+                } else {
+                    h.append("class ");
+                }
+                h.append(Type.getObjectType(name).getClassName());
+                if (superName != null && !superName.equals("java/lang/Object")) {
+                    h.append(" extends ").append(Type.getObjectType(superName).getClassName());
+                }
+                if (interfaces != null && interfaces.length > 0) {
+                    h.append((access & Opcodes.ACC_INTERFACE) != 0 ? " extends " : " implements ");
+                    for (int i = 0; i < interfaces.length; i++) {
+                        if (i > 0) h.append(", ");
+                        h.append(Type.getObjectType(interfaces[i]).getClassName());
+                    }
+                }
+                header[0] = h.toString();
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor,
+                                           String signature, Object value) {
+                fields.add(modifiers(access, Modifier.fieldModifiers()) +
+                        Type.getType(descriptor).getClassName() + " " + name +
+                        (value instanceof String ? " = \"" + value + "\"" : value != null ? " = " + value : "") + ";");
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                boolean hasBody = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+                methods.add(describeMethod(access, name, descriptor) + (hasBody ? " { ... }" : ";"));
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        sb.append(header[0]).append(" {\n");
+        for (String field : fields) {
+            sb.append("    ").append(field).append("\n");
+        }
+        if (!fields.isEmpty() && !methods.isEmpty()) {
+            sb.append("\n");
+        }
+        for (String method : methods) {
+            sb.append("    ").append(method).append("\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public static String describeMethod(int access, String name, String descriptor) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(modifiers(access, Modifier.methodModifiers()));
+
+        Type type = Type.getMethodType(descriptor);
+        if (!name.equals("<init>") && !name.equals("<clinit>")) {
+            sb.append(type.getReturnType().getClassName()).append(" ");
+        }
+        sb.append(name).append("(");
+        Type[] args = type.getArgumentTypes();
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(args[i].getClassName());
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    private static String modifiers(int access, int allowed) {
+        String text = Modifier.toString(access & allowed);
+        return text.isEmpty() ? "" : text + " ";
+    }
+}
@@ -0,0 +1,125 @@
+package su.bytecraft;
+
+// Быстрая проверка пула констант класса без ClassReader и визиторов: один проход по байтам.
+// Все строки класса (LDC, имена, дескрипторы) лежат в записях CONSTANT_Utf8, поэтому класс,
+// в Utf8 которого нет искомого текста, заведомо не содержит такой строковой константы.
+public final class ConstantPoolScanner {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private ConstantPoolScanner() {}
+
+    // Текст в "модифицированном UTF-8" class-файла (\0 - два байта, суррогаты - по отдельности)
+    public static byte[] encode(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        byte[] bytes = new byte[length];
+        int position = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != 0 && c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                bytes[position++] = (byte) (0xE0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return bytes;
+    }
+
+    // true - в какой-то записи Utf8 есть needle (в кодировке encode). Непонятный класс тоже дает true:
+    // пусть его проверит полный разбор
+    public static boolean containsUtf8(byte[] classBytes, byte[] needle) {
+        if (needle.length == 0) {
+            return true;
+        }
+        if (classBytes.length < 10 || readInt(classBytes, 0) != MAGIC) {
+            return true;
+        }
+        int count = readShort(classBytes, 8);
+        int position = 10;
+        for (int index = 1; index < count; index++) {
+            if (position >= classBytes.length) {
+                return true;
+            }
+            int tag = classBytes[position];
+            switch (tag) {
+                case 1: // Utf8
+                    if (position + 3 > classBytes.length) {
+                        return true;
+                    }
+                    int length = readShort(classBytes, position + 1);
+                    int start = position + 3;
+                    if (start + length > classBytes.length) {
+                        return true;
+                    }
+                    if (length >= needle.length && indexOf(classBytes, start, start + length, needle)) {
+                        return true;
+                    }
+                    position = start + length;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    position += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    position += 9;
+                    index++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    position += 3;
+                    break;
+                case 15: // MethodHandle
+                    position += 4;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean indexOf(byte[] data, int from, int to, byte[] needle) {
+        byte first = needle[0];
+        for (int i = from, last = to - needle.length; i <= last; i++) {
+            if (data[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && data[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int readShort(byte[] data, int position) {
+        return (data[position] & 0xFF) << 8 | data[position + 1] & 0xFF;
+    }
+
+    private static int readInt(byte[] data, int position) {
+        return (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16
+                | (data[position + 2] & 0xFF) << 8 | data[position + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,429 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// Индекс перекрестных ссылок JAR ("кто вызывает метод", "кто читает поле", "кто использует класс").
+// Строится одним проходом ASM. Все классы и члены интернированы в int-идентификаторы, вхождения лежат
+// в параллельных int-массивах, сгруппированных по цели (CSR): поиск - два обращения к массиву.
+public class CrossReferenceIndex {
+
+    public enum UsageKind {
+        CALL("вызов"),
+        READ("чтение"),
+        WRITE("запись"),
+        TYPE("тип");
+
+        public final String title;
+
+        UsageKind(String title) {
+            this.title = title;
+        }
+    }
+
+    public enum SymbolKind {
+        CLASS, FIELD, METHOD
+    }
+
+    private final File jarFile;
+    private final long jarLength;
+    private final long jarModified;
+
+    // Символы: ключ "a/b/C", "a/b/C.name:desc" или "a/b/C.name(desc)ret"
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final List<String> symbolKeys = new ArrayList<>();
+    private final IntArray symbolOwner = new IntArray();
+    private final IntArray symbolKind = new IntArray();
+
+    // Вхождения (пока строится - в порядке обхода)
+    private final IntArray usageTarget = new IntArray();
+    private final IntArray usageClass = new IntArray();
+    private final IntArray usageMember = new IntArray();
+    private final IntArray usageKind = new IntArray();
+    private final IntArray usageLine = new IntArray();
+
+    // После построения: вхождения символа s - order[firstUsage[s] .. firstUsage[s + 1])
+    private int[] firstUsage;
+    private int[] order;
+
+    // Объявленные члены класса (id класса -> id членов) и классы, объявленные в этом JAR
+    private final Map<Integer, IntArray> declared = new HashMap<>();
+    private final BitSet declaredInJar = new BitSet();
+
+    private CrossReferenceIndex(File jarFile) {
+        this.jarFile = jarFile.getAbsoluteFile();
+        this.jarLength = this.jarFile.length();
+        this.jarModified = this.jarFile.lastModified();
+    }
+
+    public static CrossReferenceIndex build(File jarFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        CrossReferenceIndex index = new CrossReferenceIndex(jarFile);
+
+        try (JarFile jar = new JarFile(jarFile)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                try (InputStream is = jar.getInputStream(entry)) {
+                    index.addClass(is.readAllBytes());
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️  Пропущен при индексации ссылок: " + entry.getName() + " (" + e + ")");
+                }
+            }
+        }
+        index.freeze();
+
+        System.out.println("🔗 Индекс ссылок " + jarFile.getName() + ": " + index.symbolKeys.size() +
+                " символов, " + index.order.length + " вхождений, " +
+                (System.currentTimeMillis() - startTime) + " мс");
+        return index;
+    }
+
+    public boolean isFor(File file) {
+        File other = file.getAbsoluteFile();
+        return jarFile.equals(other) && jarLength == other.length() && jarModified == other.lastModified();
+    }
+
+    // Члены, объявленные в классе (internal name), - для выбора, что искать
+    public List<Symbol> getDeclaredMembers(String className) {
+        Integer classId = symbolIds.get(className);
+        List<Symbol> result = new ArrayList<>();
+        if (classId == null) {
+            return result;
+        }
+        result.add(symbol(classId));
+        IntArray members = declared.get(classId);
+        if (members != null) {
+            for (int i = 0; i < members.size; i++) {
+                result.add(symbol(members.data[i]));
+            }
+        }
+        return result;
+    }
+
+    // Для класса - и ссылки на сам тип, и обращения к любым его членам. Для члена - и обращения через
+    // наследников (Sub.foo() вызывает унаследованный Base.foo), пока наследник не объявляет член сам.
+    // hierarchy = null - только точный владелец
+    public List<Usage> findUsages(Symbol target, ClassHierarchyIndex hierarchy) {
+        List<Usage> result = new ArrayList<>();
+        collect(target.id, result);
+        if (target.kind == SymbolKind.CLASS) {
+            for (int s = 0; s < symbolKeys.size(); s++) {
+                if (s != target.id && symbolOwner.data[s] == target.id) {
+                    collect(s, result);
+                }
+            }
+        } else if (hierarchy != null) {
+            String member = target.key.substring(target.key.indexOf('.'));
+            Set<String> seen = new HashSet<>();
+            Deque<String> queue = new ArrayDeque<>();
+            queue.add(target.getOwner());
+            while (!queue.isEmpty()) {
+                for (ClassHierarchyIndex.TypeInfo sub : hierarchy.getDirectSubtypes(queue.poll())) {
+                    if (!seen.add(sub.name)) {
+                        continue;
+                    }
+                    Integer id = symbolIds.get(sub.name + member);
+                    if (id != null && declaredInJar.get(id)) {
+                        // Переопределен или скрыт: у наследника и его подтипов уже свой член
+                        continue;
+                    }
+                    if (id != null) {
+                        collect(id, result);
+                    }
+                    queue.add(sub.name);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Символы, в ключе которых есть текст (без учета регистра); объявленные в JAR - первыми
+    public List<Symbol> findSymbols(String text, int limit) {
+        String needle = text.toLowerCase(Locale.ROOT).replace('.', '/');
+        List<Symbol> own = new ArrayList<>();
+        List<Symbol> external = new ArrayList<>();
+        for (int s = 0; s < symbolKeys.size() && own.size() < limit; s++) {
+            if (symbolKeys.get(s).toLowerCase(Locale.ROOT).replace('.', '/').contains(needle)) {
+                (declaredInJar.get(s) ? own : external).add(symbol(s));
+            }
+        }
+        own.addAll(external.subList(0, Math.min(external.size(), Math.max(0, limit - own.size()))));
+        return own;
+    }
+
+    public Symbol findSymbol(String key) {
+        Integer id = symbolIds.get(key);
+        return id != null ? symbol(id) : null;
+    }
+
+    private void collect(int symbolId, List<Usage> result) {
+        for (int i = firstUsage[symbolId]; i < firstUsage[symbolId + 1]; i++) {
+            int u = order[i];
+            int member = usageMember.data[u];
+            result.add(new Usage(symbol(usageTarget.data[u]), symbolKeys.get(usageClass.data[u]),
+                    member >= 0 ? symbol(member) : null, UsageKind.values()[usageKind.data[u]], usageLine.data[u]));
+        }
+    }
+
+    private Symbol symbol(int id) {
+        return new Symbol(id, symbolKeys.get(id), SymbolKind.values()[symbolKind.data[id]],
+                declaredInJar.get(id));
+    }
+
+    // ========== ПОСТРОЕНИЕ ==========
+
+    private void addClass(byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        String self = reader.getClassName();
+        int classId = classSymbol(self);
+        declaredInJar.set(classId);
+        IntArray members = declared.computeIfAbsent(classId, k -> new IntArray());
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature,
+                              String superName, String[] interfaces) {
+                if (superName != null) {
+                    addUsage(classSymbol(superName), classId, -1, UsageKind.TYPE, 0);
+                }
+                if (interfaces != null) {
+                    for (String itf : interfaces) {
+                        addUsage(classSymbol(itf), classId, -1, UsageKind.TYPE, 0);
+                    }
+                }
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor,
+                                           String signature, Object value) {
+                int fieldId = memberSymbol(self, name + ":" + descriptor, SymbolKind.FIELD);
+                members.add(fieldId);
+                declaredInJar.set(fieldId);
+                addDescriptorTypes(Type.getType(descriptor), classId, fieldId, 0);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                int methodId = memberSymbol(self, name + descriptor, SymbolKind.METHOD);
+                members.add(methodId);
+                declaredInJar.set(methodId);
+                addDescriptorTypes(Type.getMethodType(descriptor), classId, methodId, 0);
+
+                return new MethodVisitor(Opcodes.ASM9) {
+                    private int line;
+
+                    @Override
+                    public void visitLineNumber(int lineNumber, Label start) {
+                        line = lineNumber;
+                    }
+
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String methodName,
+                                                String methodDescriptor, boolean isInterface) {
+                        addUsage(memberSymbol(owner, methodName + methodDescriptor, SymbolKind.METHOD),
+                                classId, methodId, UsageKind.CALL, line);
+                    }
+
+                    @Override
+                    public void visitFieldInsn(int opcode, String owner, String fieldName, String fieldDescriptor) {
+                        UsageKind kind = opcode == Opcodes.GETFIELD || opcode == Opcodes.GETSTATIC
+                                ? UsageKind.READ : UsageKind.WRITE;
+                        addUsage(memberSymbol(owner, fieldName + ":" + fieldDescriptor, SymbolKind.FIELD),
+                                classId, methodId, kind, line);
+                    }
+
+                    @Override
+                    public void visitTypeInsn(int opcode, String type) {
+                        addDescriptorTypes(Type.getObjectType(type), classId, methodId, line);
+                    }
+
+                    @Override
+                    public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                        addDescriptorTypes(Type.getType(descriptor), classId, methodId, line);
+                    }
+
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        if (value instanceof Type && ((Type) value).getSort() != Type.METHOD) {
+                            addDescriptorTypes((Type) value, classId, methodId, line);
+                        }
+                    }
+
+                    @Override
+                    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                        if (type != null) {
+                            addUsage(classSymbol(type), classId, methodId, UsageKind.TYPE, line);
+                        }
+                    }
+
+                    @Override
+                    public void visitInvokeDynamicInsn(String indyName, String indyDescriptor,
+                                                       Handle bootstrap, Object... arguments) {
+                        // Ссылки на методы и лямбды: Foo::bar - тоже вызов bar
+                        for (Object argument : arguments) {
+                            if (argument instanceof Handle) {
+                                Handle handle = (Handle) argument;
+                                boolean field = handle.getTag() <= Opcodes.H_PUTSTATIC;
+                                int target = field
+                                        ? memberSymbol(handle.getOwner(), handle.getName() + ":" + handle.getDesc(), SymbolKind.FIELD)
+                                        : memberSymbol(handle.getOwner(), handle.getName() + handle.getDesc(), SymbolKind.METHOD);
+                                UsageKind kind = !field ? UsageKind.CALL
+                                        : handle.getTag() <= Opcodes.H_GETSTATIC ? UsageKind.READ : UsageKind.WRITE;
+                                addUsage(target, classId, methodId, kind, line);
+                            }
+                        }
+                    }
+                };
+            }
+        }, ClassReader.SKIP_FRAMES);
+    }
+
+    private void addDescriptorTypes(Type type, int classId, int memberId, int line) {
+        if (type.getSort() == Type.METHOD) {
+            addDescriptorTypes(type.getReturnType(), classId, memberId, line);
+            for (Type argument : type.getArgumentTypes()) {
+                addDescriptorTypes(argument, classId, memberId, line);
+            }
+            return;
+        }
+        while (type.getSort() == Type.ARRAY) {
+            type = type.getElementType();
+        }
+        if (type.getSort() == Type.OBJECT) {
+            addUsage(classSymbol(type.getInternalName()), classId, memberId, UsageKind.TYPE, line);
+        }
+    }
+
+    private int classSymbol(String internalName) {
+        return intern(internalName, -1, SymbolKind.CLASS);
+    }
+
+    private int memberSymbol(String owner, String nameAndDescriptor, SymbolKind kind) {
+        return intern(owner + "." + nameAndDescriptor, classSymbol(owner), kind);
+    }
+
+    private int intern(String key, int owner, SymbolKind kind) {
+        Integer id = symbolIds.get(key);
+        if (id == null) {
+            id = symbolKeys.size();
+            symbolIds.put(key, id);
+            symbolKeys.add(key);
+            symbolOwner.add(owner < 0 ? id : owner);
+            symbolKind.add(kind.ordinal());
+        }
+        return id;
+    }
+
+    private void addUsage(int target, int classId, int memberId, UsageKind kind, int line) {
+        usageTarget.add(target);
+        usageClass.add(classId);
+        usageMember.add(memberId);
+        usageKind.add(kind.ordinal());
+        usageLine.add(line);
+    }
+
+    // Сортировка подсчетом по цели: вхождения одного символа лежат подряд
+    private void freeze() {
+        int symbols = symbolKeys.size();
+        firstUsage = new int[symbols + 1];
+        for (int u = 0; u < usageTarget.size; u++) {
+            firstUsage[usageTarget.data[u] + 1]++;
+        }
+        for (int s = 0; s < symbols; s++) {
+            firstUsage[s + 1] += firstUsage[s];
+        }
+        order = new int[usageTarget.size];
+        int[] next = Arrays.copyOf(firstUsage, symbols);
+        for (int u = 0; u < usageTarget.size; u++) {
+            order[next[usageTarget.data[u]]++] = u;
+        }
+    }
+
+    private static class IntArray {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    public static class Symbol {
+        final int id;
+        public final String key;
+        public final SymbolKind kind;
+        // false - символ из библиотеки/JDK, в JAR только ссылки на него
+        public final boolean declaredInJar;
+
+        Symbol(int id, String key, SymbolKind kind, boolean declaredInJar) {
+            this.id = id;
+            this.key = key;
+            this.kind = kind;
+            this.declaredInJar = declaredInJar;
+        }
+
+        public String getOwner() {
+            int dot = key.indexOf('.');
+            return dot < 0 ? key : key.substring(0, dot);
+        }
+
+        @Override
+        public String toString() {
+            if (kind == SymbolKind.CLASS) {
+                return "класс " + key.replace('/', '.');
+            }
+            String member = key.substring(key.indexOf('.') + 1);
+            if (kind == SymbolKind.FIELD) {
+                int colon = member.indexOf(':');
+                return "поле " + Type.getType(member.substring(colon + 1)).getClassName() + " " +
+                        member.substring(0, colon);
+            }
+            int paren = member.indexOf('(');
+            return "метод " + ClassOutline.describeMethod(0, member.substring(0, paren), member.substring(paren));
+        }
+    }
+
+    public static class Usage {
+        public final Symbol target;
+        // Класс (internal name) и метод/поле, откуда идет обращение (null - заголовок класса)
+        public final String className;
+        public final Symbol from;
+        public final UsageKind kind;
+        // 0 - нет отладочной информации о строках
+        public final int line;
+
+        Usage(Symbol target, String className, Symbol from, UsageKind kind, int line) {
+            this.target = target;
+            this.className = className;
+            this.from = from;
+            this.kind = kind;
+            this.line = line;
+        }
+
+        @Override
+        public String toString() {
+            String where = className.replace('/', '.');
+            if (from != null) {
+                String member = from.key.substring(from.key.indexOf('.') + 1);
+                int cut = member.indexOf(from.kind == SymbolKind.FIELD ? ':' : '(');
+                where += "." + member.substring(0, cut);
+            }
+            return "[" + kind.title + "] " + where + (line > 0 ? " : строка " + line : "");
+        }
+    }
+}
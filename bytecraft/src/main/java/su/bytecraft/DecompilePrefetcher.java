@@ -0,0 +1,226 @@
+package su.bytecraft;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Фоновая декомпиляция "соседей" открытого класса: внутренние классы, суперкласс и классы
+// из пула констант. Один поток с минимальным приоритетом; при любом интерактивном запросе
+// текущая работа прерывается и поток ждет, пока интерактивные запросы не закончатся.
+public class DecompilePrefetcher {
+
+    // Сколько соседей декомпилировать на один открытый класс: -Dbytecraft.prefetch.limit=...
+    public static final int NEIGHBOUR_LIMIT = Integer.getInteger("bytecraft.prefetch.limit", 12);
+
+    private final Decompiler decompiler;
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger interactive = new AtomicInteger();
+    private final Object pauseLock = new Object();
+
+    private final AtomicInteger prefetched = new AtomicInteger();
+    private final AtomicInteger preempted = new AtomicInteger();
+    private final AtomicInteger timedOut = new AtomicInteger();
+
+    private volatile Thread worker;
+    private volatile boolean busy;
+
+    public DecompilePrefetcher(Decompiler decompiler) {
+        this.decompiler = decompiler;
+    }
+
+    // Новый открытый класс вытесняет очередь предыдущего
+    public void prefetchNeighbours(File jarFile, String className) {
+        long current = generation.incrementAndGet();
+        queue.clear();
+
+        List<String> neighbours;
+        try {
+            neighbours = findNeighbours(decompiler.readClassBytes(jarFile, className), className);
+        } catch (IOException | RuntimeException e) {
+            return;
+        }
+
+        int queued = 0;
+        for (String neighbour : neighbours) {
+            if (queued >= NEIGHBOUR_LIMIT) {
+                break;
+            }
+            if (decompiler.canPrefetch(jarFile, neighbour)) {
+                queue.offer(new Task(jarFile, neighbour, current));
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            ensureWorker();
+        }
+    }
+
+    public void cancelAll() {
+        generation.incrementAndGet();
+        queue.clear();
+        Thread thread = worker;
+        if (thread != null && busy) {
+            thread.interrupt();
+        }
+    }
+
+    // Вызывается перед интерактивной декомпиляцией: фоновый CFR останавливается на ближайшей точке отмены
+    void beginInteractive() {
+        interactive.incrementAndGet();
+        Thread thread = worker;
+        if (thread != null && busy) {
+            thread.interrupt();
+        }
+    }
+
+    void endInteractive() {
+        if (interactive.decrementAndGet() == 0) {
+            synchronized (pauseLock) {
+                pauseLock.notifyAll();
+            }
+        }
+    }
+
+    boolean hasInteractiveWork() {
+        return interactive.get() > 0;
+    }
+
+    public String getStats() {
+        return "предзагрузка: декомпилировано " + prefetched.get() + ", уступила место " + preempted.get() +
+                ", брошено по лимиту времени " + timedOut.get();
+    }
+
+    // Порядок - по вероятности следующего перехода: внутренние классы, суперкласс, остальные ссылки
+    static List<String> findNeighbours(byte[] classBytes, String className) {
+        ClassReader reader = new ClassReader(classBytes);
+        String self = reader.getClassName();
+        Set<String> result = new LinkedHashSet<>();
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                if (self.equals(outerName) || name.startsWith(self + "$")) {
+                    result.add(name);
+                }
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        if (reader.getSuperName() != null) {
+            result.add(reader.getSuperName());
+        }
+
+        char[] buf = new char[Math.max(reader.getMaxStringLength(), 16)];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // Тег 7 - CONSTANT_Class
+            if (offset != 0 && reader.readByte(offset - 1) == 7) {
+                String name = reader.readUTF8(offset, buf);
+                if (name != null && !name.startsWith("[")) {
+                    result.add(name);
+                }
+            }
+        }
+
+        result.remove(self);
+        List<String> paths = new ArrayList<>(result.size());
+        for (String name : result) {
+            String path = name + ".class";
+            if (!path.equals(className)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    private synchronized void ensureWorker() {
+        if (worker != null) {
+            return;
+        }
+        Thread thread = new Thread(this::runLoop, "bytecraft-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        worker = thread;
+        thread.start();
+    }
+
+    private void runLoop() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                // Прерывание пришло между задачами - просто продолжаем
+                continue;
+            }
+
+            try {
+                waitForIdle();
+            } catch (InterruptedException e) {
+                queue.offerFirst(task);
+                continue;
+            }
+
+            if (task.generation != generation.get()) {
+                continue;
+            }
+
+            // busy выставляем до проверки: иначе beginInteractive может не заметить начатую работу
+            busy = true;
+            if (interactive.get() > 0) {
+                busy = false;
+                queue.offerFirst(task);
+                continue;
+            }
+
+            boolean interrupted = false;
+            try {
+                if (decompiler.prefetch(task.jarFile, task.className, Decompiler.DEFAULT_TIMEOUT_MS)) {
+                    prefetched.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (TimeoutException e) {
+                // Тяжелый класс не возвращаем в очередь: иначе он занимал бы предзагрузку до конца сессии
+                timedOut.incrementAndGet();
+            } catch (Exception e) {
+                // Неудачи предзагрузки не важны: при открытии класс просто декомпилируется обычным путем
+            } finally {
+                busy = false;
+                if ((Thread.interrupted() || interrupted) && task.generation == generation.get()) {
+                    // Уступили интерактивному запросу - класс вернется в начало очереди
+                    preempted.incrementAndGet();
+                    queue.offerFirst(task);
+                }
+            }
+        }
+    }
+
+    private void waitForIdle() throws InterruptedException {
+        synchronized (pauseLock) {
+            while (interactive.get() > 0) {
+                pauseLock.wait();
+            }
+        }
+    }
+
+    private static class Task {
+        final File jarFile;
+        final String className;
+        final long generation;
+
+        Task(File jarFile, String className, long generation) {
+            this.jarFile = jarFile;
+            this.className = className;
+            this.generation = generation;
+        }
+    }
+}
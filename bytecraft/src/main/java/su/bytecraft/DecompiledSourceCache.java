@@ -0,0 +1,217 @@
+package su.bytecraft;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Двухуровневый кэш декомпилированного кода:
+// горячие классы - строками в куче (LRU), остальные - сжатыми в off-heap буферах (LRU)
+public class DecompiledSourceCache {
+
+    // Бюджеты можно переопределить: -Dbytecraft.cache.heapBytes=... -Dbytecraft.cache.offHeapBytes=...
+    public static final long DEFAULT_HEAP_BUDGET = 32L * 1024 * 1024;
+    public static final long DEFAULT_OFF_HEAP_BUDGET = 128L * 1024 * 1024;
+
+    // Примерные накладные расходы на одну запись (ключ, узел карты, заголовки объектов)
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long heapBudget;
+    private final long offHeapBudget;
+
+    private final LinkedHashMap<String, String> heap = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> offHeap = new LinkedHashMap<>(64, 0.75f, true);
+    private long heapBytes;
+    private long offHeapBytes;
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong offHeapHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DecompiledSourceCache() {
+        this(Long.getLong("bytecraft.cache.heapBytes", DEFAULT_HEAP_BUDGET),
+                Long.getLong("bytecraft.cache.offHeapBytes", DEFAULT_OFF_HEAP_BUDGET));
+    }
+
+    public DecompiledSourceCache(long heapBudget, long offHeapBudget) {
+        this.heapBudget = heapBudget;
+        this.offHeapBudget = offHeapBudget;
+    }
+
+    // Ключ: идентичность JAR (путь, размер, дата) + имя записи + CRC записи
+    public static String key(File jarFile, String entryName, long crc) {
+        File file = jarFile.getAbsoluteFile();
+        return file.getPath() + "|" + file.length() + "|" + file.lastModified() +
+                "!" + entryName + "#" + Long.toHexString(crc);
+    }
+
+    public synchronized String get(String key) {
+        String source = heap.get(key);
+        if (source != null) {
+            heapHits.incrementAndGet();
+            return source;
+        }
+
+        ByteBuffer compressed = offHeap.remove(key);
+        if (compressed != null) {
+            offHeapBytes -= compressed.capacity() + ENTRY_OVERHEAD;
+            source = decompress(compressed);
+            if (source != null) {
+                offHeapHits.incrementAndGet();
+                // Класс снова горячий - поднимаем в кучу
+                putHeap(key, source);
+                return source;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // Проверка без подъема записи и без учета в статистике (для фоновой предзагрузки)
+    public synchronized boolean contains(String key) {
+        return heap.containsKey(key) || offHeap.containsKey(key);
+    }
+
+    public synchronized void put(String key, String source) {
+        ByteBuffer stale = offHeap.remove(key);
+        if (stale != null) {
+            offHeapBytes -= stale.capacity() + ENTRY_OVERHEAD;
+        }
+        putHeap(key, source);
+    }
+
+    public synchronized void clear() {
+        heap.clear();
+        offHeap.clear();
+        heapBytes = 0;
+        offHeapBytes = 0;
+    }
+
+    private void putHeap(String key, String source) {
+        String previous = heap.put(key, source);
+        if (previous != null) {
+            heapBytes -= heapSize(previous);
+        }
+        heapBytes += heapSize(source);
+
+        // Вытесняем самые давние классы из кучи в сжатый off-heap уровень
+        Iterator<Map.Entry<String, String>> it = heap.entrySet().iterator();
+        while (heapBytes > heapBudget && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            it.remove();
+            heapBytes -= heapSize(eldest.getValue());
+            putOffHeap(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void putOffHeap(String key, String source) {
+        if (offHeapBudget <= 0) {
+            evictions.incrementAndGet();
+            return;
+        }
+
+        ByteBuffer compressed = compress(source);
+        offHeap.put(key, compressed);
+        offHeapBytes += compressed.capacity() + ENTRY_OVERHEAD;
+
+        Iterator<Map.Entry<String, ByteBuffer>> it = offHeap.entrySet().iterator();
+        while (offHeapBytes > offHeapBudget && it.hasNext()) {
+            Map.Entry<String, ByteBuffer> eldest = it.next();
+            it.remove();
+            offHeapBytes -= eldest.getValue().capacity() + ENTRY_OVERHEAD;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long heapSize(String source) {
+        return (long) source.length() * 2 + ENTRY_OVERHEAD;
+    }
+
+    private static ByteBuffer compress(String source) {
+        byte[] raw = source.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        // [длина исходных байт][сжатые данные]
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4 + out.size());
+        buffer.putInt(raw.length);
+        buffer.put(out.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String decompress(ByteBuffer compressed) {
+        ByteBuffer view = compressed.duplicate();
+        byte[] raw = new byte[view.getInt()];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(view);
+            int offset = 0;
+            while (offset < raw.length && !inflater.finished()) {
+                offset += inflater.inflate(raw, offset, raw.length - offset);
+            }
+            return new String(raw, 0, offset, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            System.err.println("⚠️  Поврежденная запись кэша: " + e.getMessage());
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public long getHeapHits() {
+        return heapHits.get();
+    }
+
+    public long getOffHeapHits() {
+        return offHeapHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public synchronized long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    public synchronized String getStats() {
+        return "кэш: куча " + heap.size() + " (" + heapBytes / 1024 + " КБ), " +
+                "off-heap " + offHeap.size() + " (" + offHeapBytes / 1024 + " КБ), " +
+                "попаданий " + (heapHits.get() + offHeapHits.get()) + ", промахов " + misses.get() +
+                ", вытеснено " + evictions.get();
+    }
+}
@@ -1,17 +1,99 @@
 package su.bytecraft;
 
 import org.benf.cfr.reader.api.CfrDriver;
+import org.benf.cfr.reader.api.ClassFileSource;
 import org.benf.cfr.reader.api.OutputSinkFactory;
 import org.benf.cfr.reader.api.SinkReturns;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
+import org.benf.cfr.reader.util.CfrVersionInfo;
 
 import java.io.*;
-import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Decompiler {
 
+    // Текущая сессия открытого плагина (null - декомпиляция "одним выстрелом")
+    private volatile DecompilerSession session;
+
+    // Кэш результатов: повторное открытие класса не запускает CFR
+    private final DecompiledSourceCache sourceCache = new DecompiledSourceCache();
+
+    // Дисковый кэш между запусками (и между машинами, если папка общая)
+    private final DiskDecompilationCache diskCache = new DiskDecompilationCache();
+
+    // Фоновая декомпиляция классов, которые вероятно откроют следующими
+    private final DecompilePrefetcher prefetcher = new DecompilePrefetcher(this);
+
+    // Лимит времени на один класс: -Dbytecraft.decompile.timeoutMs=...
+    public static final long DEFAULT_TIMEOUT_MS = Long.getLong("bytecraft.decompile.timeoutMs", 20000);
+
+    // Число потоков CFR: -Dbytecraft.decompile.threads=...
+    public static final int CFR_THREADS = Math.max(1, Integer.getInteger("bytecraft.decompile.threads", 4));
+
+    // Потоки CFR отдельно от потоков IDE: зависший класс не блокирует интерфейс. Пул ограничен:
+    // отмена только кооперативная, и поток, который не дошел до точки отмены, остается занят
+    private final ThreadPoolExecutor cfrExecutor = createCfrExecutor(CFR_THREADS, "bytecraft-cfr", Thread.NORM_PRIORITY);
+
+    // Фоновые задачи (индексация) - на своих потоках: их зависшие классы не занимают потоки открытия
+    private final ThreadPoolExecutor backgroundExecutor = createCfrExecutor(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), "bytecraft-cfr-background", Thread.MIN_PRIORITY);
+
+    // Запуски CFR, чей поток еще работает (и отмененные, но не дошедшие до точки отмены). Под своим монитором
+    private final Map<String, CfrTask> runningTasks = new HashMap<>();
+
+    private static final Map<String, String> CFR_OPTIONS = createOptions();
+
+    // Версия CFR (из самого jar CFR) и опции входят в ключ дискового кэша: другие опции - другой результат
+    private static final String OPTIONS_FINGERPRINT = "cfr-" + CfrVersionInfo.VERSION_INFO + new TreeMap<>(CFR_OPTIONS);
+
+    public synchronized DecompilerSession openSession(File jarFile) throws IOException {
+        closeSession();
+        session = DecompilerSession.open(jarFile);
+        return session;
+    }
+
+    public synchronized void closeSession() {
+        prefetcher.cancelAll();
+        if (session != null) {
+            System.out.println("📊 Декомпиляция, " + sourceCache.getStats());
+            System.out.println("📊 Декомпиляция, " + diskCache.getStats());
+            System.out.println("📊 Декомпиляция, " + prefetcher.getStats());
+            // Новые вызовы сессию уже не увидят; незавершенные дочитают ее JAR до конца
+            DecompilerSession closing = session;
+            session = null;
+            closing.close();
+        }
+    }
+
     public String decompileClassFromJar(File jarFile, String className) throws Exception {
-        Path tempDir = Files.createTempDirectory("bytecraft_");
+        try {
+            return decompileClassOrThrow(jarFile, className);
+        } catch (DecompilationException e) {
+            return "// " + e.getMessage();
+        }
+    }
+
+    // То же, но неудача CFR - исключение, а не комментарий в коде (для пакетных операций)
+    public String decompileClassOrThrow(File jarFile, String className) throws IOException, DecompilationException {
+        return decompileClass(jarFile, className, true);
+    }
+
+    // store = false - результат не попадает в кэши (фоновые задачи не вытесняют открытые пользователем классы)
+    private String decompileClass(File jarFile, String className, boolean store)
+            throws IOException, DecompilationException {
+        DecompilerSession current = acquireSession(jarFile);
+        if (current != null) {
+            try {
+                java.util.jar.JarEntry entry = current.getJar().getJarEntry(className);
+                if (entry == null) {
+                    throw new IOException("Класс не найден: " + className);
+                }
+                return decompileCached(current.getClassSource(), jarFile, entry, store);
+            } finally {
+                current.release();
+            }
+        }
 
         try (java.util.jar.JarFile jar = new java.util.jar.JarFile(jarFile)) {
             java.util.jar.JarEntry entry = jar.getJarEntry(className);
@@ -19,64 +101,425 @@ public class Decompiler {
                 throw new IOException("Класс не найден: " + className);
             }
 
-            Path tempClass = tempDir.resolve(className);
-            Files.createDirectories(tempClass.getParent());
+            // CFR читает байткод прямо из открытого JAR, без временной директории
+            return decompileCached(new JarClassFileSource(jar), jarFile, entry, store);
+        }
+    }
 
-            try (InputStream is = jar.getInputStream(entry);
-                 OutputStream os = Files.newOutputStream(tempClass)) {
-                is.transferTo(os);
-            }
+    // Декомпиляция с лимитом времени. При таймауте или прерывании вызывающего потока
+    // поток CFR получает interrupt и останавливается на ближайшей точке отмены.
+    public String decompileWithTimeout(File jarFile, String className, long timeoutMillis)
+            throws IOException, DecompilationException, TimeoutException, InterruptedException {
+        return runWithTimeout(jarFile.getAbsolutePath() + "!" + className,
+                () -> decompileClassOrThrow(jarFile, className), timeoutMillis, true);
+    }
 
-            return decompileWithCFR(tempClass.toFile());
+    // Для фоновых задач: тот же лимит времени, но на фоновых потоках и без записи в кэши. Готовый
+    // результат из кэшей используется. Класс, не уложившийся в лимит, - TimeoutException
+    public String decompileInBackground(File jarFile, String className, long timeoutMillis)
+            throws IOException, DecompilationException, TimeoutException, InterruptedException {
+        return runWithTimeout("background:" + jarFile.getAbsolutePath() + "!" + className,
+                () -> decompileClass(jarFile, className, false), timeoutMillis, false);
+    }
+
+    // ========== ПРЕДЗАГРУЗКА ==========
+
+    // Только в рамках сессии: без нее каждый фоновый класс открывал бы JAR заново
+    public void prefetchNeighbours(File jarFile, String className) {
+        DecompilerSession current = session;
+        if (current != null && current.isFor(jarFile)) {
+            prefetcher.prefetchNeighbours(jarFile, className);
+        }
+    }
+
+    // Класс есть в открытом плагине и еще не лежит в кэше
+    boolean canPrefetch(File jarFile, String className) {
+        DecompilerSession current = acquireSession(jarFile);
+        if (current == null) {
+            return false;
+        }
+        try {
+            java.util.jar.JarEntry entry = current.getJar().getJarEntry(className);
+            return entry != null && !isCached(current, jarFile, entry);
         } finally {
-            deleteDirectory(tempDir);
+            current.release();
         }
     }
 
-    private String decompileWithCFR(File classFile) {
+    // Готовый результат уже в памяти (без учета дискового кэша и только в рамках сессии)
+    public boolean isCached(File jarFile, String className) {
+        DecompilerSession current = acquireSession(jarFile);
+        if (current == null) {
+            return false;
+        }
         try {
-            List<String> result = new ArrayList<>();
+            java.util.jar.JarEntry entry = current.getJar().getJarEntry(className);
+            return entry != null && isCached(current, jarFile, entry);
+        } finally {
+            current.release();
+        }
+    }
 
-            OutputSinkFactory sinkFactory = new OutputSinkFactory() {
-                @Override
-                public List<SinkClass> getSupportedSinks(SinkType sinkType, Collection<SinkClass> collection) {
-                    return Arrays.asList(SinkClass.STRING, SinkClass.DECOMPILED);
-                }
+    private boolean isCached(DecompilerSession current, File jarFile, java.util.jar.JarEntry entry) {
+        return sourceCache.contains(memoryKey(current.getClassSource(), jarFile, entry));
+    }
 
-                @Override
-                public <T> Sink<T> getSink(SinkType sinkType, SinkClass sinkClass) {
-                    return data -> {
-                        if (sinkType == SinkType.JAVA && sinkClass == SinkClass.DECOMPILED) {
-                            if (data instanceof SinkReturns.Decompiled) {
-                                result.add(((SinkReturns.Decompiled) data).getJava());
-                            }
-                        } else if (sinkType == SinkType.JAVA && sinkClass == SinkClass.STRING) {
-                            result.add(data.toString());
-                        }
-                    };
+    // Открытая сессия этого JAR, уже захваченная (после работы - release()); null - работаем без сессии.
+    // Пока сессия захвачена, ее JAR не закрываются, даже если пользователь открыл другой плагин
+    private DecompilerSession acquireSession(File jarFile) {
+        DecompilerSession current = session;
+        return current != null && current.isFor(jarFile) && current.acquire() ? current : null;
+    }
+
+    // Ключ кэша в памяти: JAR и класс, плюс окружение анализа (с API сессии и без него результат разный)
+    private static String memoryKey(JarClassFileSource source, File jarFile, java.util.jar.JarEntry entry) {
+        return DecompiledSourceCache.key(jarFile, entry.getName(), entry.getCrc()) + "|" + source.getFingerprint();
+    }
+
+    // Вызывается из потока предзагрузки: с лимитом времени на фоновых потоках CFR, результат оседает
+    // в кэшах как при обычном открытии (только удачный - прерванный и просроченный не кэшируются)
+    boolean prefetch(File jarFile, String className, long timeoutMillis)
+            throws IOException, DecompilationException, TimeoutException, InterruptedException {
+        if (!canPrefetch(jarFile, className)) {
+            return false;
+        }
+        runWithTimeout("prefetch:" + jarFile.getAbsolutePath() + "!" + className,
+                () -> decompileClassOrThrow(jarFile, className), timeoutMillis, false);
+        return true;
+    }
+
+    // Фоновым задачам (индексация и т.п.) стоит подождать, пока пользователь ждет класс
+    public boolean hasInteractiveWork() {
+        return prefetcher.hasInteractiveWork();
+    }
+
+    // ========== ДЕКОМПИЛЯЦИЯ ОТДЕЛЬНОГО МЕТОДА ==========
+
+    public List<MethodSlicer.MethodInfo> listMethods(File jarFile, String className) throws IOException {
+        return MethodSlicer.listMethods(readClassBytes(jarFile, className));
+    }
+
+    // CFR получает урезанную копию класса (поля + метод + его лямбды), остальные классы - как обычно.
+    // Результат кэшируется отдельно для каждого метода.
+    public String decompileMethodOrThrow(File jarFile, String className, String methodName, String descriptor)
+            throws IOException, DecompilationException {
+        DecompilerSession current = acquireSession(jarFile);
+        if (current != null) {
+            try {
+                return decompileMethodCached(current.getClassSource(), jarFile,
+                        current.getJar().getJarEntry(className), className, methodName, descriptor);
+            } finally {
+                current.release();
+            }
+        }
+
+        try (java.util.jar.JarFile jar = new java.util.jar.JarFile(jarFile)) {
+            return decompileMethodCached(new JarClassFileSource(jar), jarFile,
+                    jar.getJarEntry(className), className, methodName, descriptor);
+        }
+    }
+
+    public String decompileMethodWithTimeout(File jarFile, String className, String methodName,
+                                             String descriptor, long timeoutMillis)
+            throws IOException, DecompilationException, TimeoutException, InterruptedException {
+        return runWithTimeout(jarFile.getAbsolutePath() + "!" + className + "#" + methodName + descriptor,
+                () -> decompileMethodOrThrow(jarFile, className, methodName, descriptor), timeoutMillis, true);
+    }
+
+    private String decompileMethodCached(JarClassFileSource source, File jarFile, java.util.jar.JarEntry entry,
+                                         String className, String methodName, String descriptor)
+            throws IOException, DecompilationException {
+        if (entry == null) {
+            throw new IOException("Класс не найден: " + className);
+        }
+
+        String cacheKey = memoryKey(source, jarFile, entry) + "#" + methodName + descriptor;
+        String cached = sourceCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] sliced;
+        try {
+            sliced = MethodSlicer.slice(source.getClassBytes(entry.getName()), methodName, descriptor);
+        } catch (IllegalArgumentException e) {
+            throw new DecompilationException(e.getMessage(), e);
+        }
+
+        // Подменяем только сам класс, все остальное (внутренние классы, API, JDK) - из общего источника
+        ClassFileSource slicedSource = new ClassFileSource() {
+            @Override
+            public void informAnalysisRelativePathDetail(String usePath, String classFilePath) {
+                source.informAnalysisRelativePathDetail(usePath, classFilePath);
+            }
+
+            @Override
+            public Collection<String> addJar(String jarPath) {
+                return source.addJar(jarPath);
+            }
+
+            @Override
+            public String getPossiblyRenamedPath(String path) {
+                return source.getPossiblyRenamedPath(path);
+            }
+
+            @Override
+            public Pair<byte[], String> getClassFileContent(String path) throws IOException {
+                return path.equals(entry.getName()) ? Pair.make(sliced, path) : source.getClassFileContent(path);
+            }
+        };
+
+        try {
+            return decompileAndStore(slicedSource, entry.getName(), cacheKey,
+                    diskCache.isEnabled() ? diskKey(source, entry.getName(), sliced) : null, true);
+        } catch (DecompilationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DecompilationException("Ошибка декомпиляции: " + e.getMessage(), e);
+        }
+    }
+
+    // Прерывание ожидающего потока или таймаут передаются потоку CFR через cancel(true), если результат
+    // больше никто не ждет. Повторный запрос того же класса присоединяется к уже идущему запуску.
+    // interactive - запрос пользователя (потоки cfrExecutor), иначе фоновый (backgroundExecutor)
+    private String runWithTimeout(String key, Callable<String> task, long timeoutMillis, boolean interactive)
+            throws IOException, DecompilationException, TimeoutException, InterruptedException {
+        // Интерактивный запрос всегда важнее предзагрузки
+        if (interactive) {
+            prefetcher.beginInteractive();
+        }
+        try {
+            CfrTask cfr = startTask(interactive ? cfrExecutor : backgroundExecutor, key, task, timeoutMillis);
+            boolean abandoned = false;
+            try {
+                return cfr.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | InterruptedException e) {
+                abandoned = true;
+                throw e;
+            } catch (CancellationException e) {
+                throw new DecompilationException("Декомпиляция отменена");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof DecompilationException) throw (DecompilationException) cause;
+                throw new DecompilationException("Ошибка декомпиляции: " + cause, cause);
+            } finally {
+                synchronized (runningTasks) {
+                    if (--cfr.waiters == 0 && abandoned) {
+                        cfr.cancel(true);
+                    }
                 }
-            };
+            }
+        } finally {
+            if (interactive) {
+                prefetcher.endInteractive();
+            }
+        }
+    }
 
-            Map<String, String> options = new HashMap<>();
-            options.put("comments", "true");
-            options.put("sugarenums", "true");
-            options.put("decodeenumswitch", "true");
+    private CfrTask startTask(ThreadPoolExecutor executor, String key, Callable<String> task, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        CfrTask previous;
+        synchronized (runningTasks) {
+            previous = runningTasks.get(key);
+            if (previous != null && !previous.isCancelled()) {
+                previous.waiters++;
+                return previous;
+            }
+            // Отмененный запуск, который CFR так и не начал, ничего не держит
+            if (previous == null || !previous.started) {
+                CfrTask cfr = new CfrTask(key, task);
+                runningTasks.put(key, cfr);
+                executor.execute(cfr);
+                return cfr;
+            }
+        }
 
-            CfrDriver driver = new CfrDriver.Builder()
-                    .withOptions(options)
-                    .withOutputSink(sinkFactory)
-                    .build();
+        // Прошлый запуск этого класса отменен, но CFR еще не дошел до точки отмены. Второй поток
+        // на тот же класс не запускаем: ждем первый в пределах того же лимита
+        if (!previous.finished.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Прошлая декомпиляция " + key + " не остановилась за " + timeoutMillis + " мс");
+        }
+        return startTask(executor, key, task, timeoutMillis);
+    }
 
-            driver.analyse(Collections.singletonList(classFile.getAbsolutePath()));
+    private static ThreadPoolExecutor createCfrExecutor(int threads, String name, int priority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    thread.setPriority(priority);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Запуск CFR для одного ключа (класс или метод). waiters меняется под монитором runningTasks
+    private final class CfrTask extends FutureTask<String> {
+        final String key;
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean started;
+        int waiters = 1;
 
-            if (!result.isEmpty()) {
-                return String.join("\n", result);
+        CfrTask(String key, Callable<String> task) {
+            super(task);
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            started = !isCancelled();
+            try {
+                super.run();
+            } finally {
+                synchronized (runningTasks) {
+                    runningTasks.remove(key, this);
+                }
+                finished.countDown();
             }
-            return "// Нет результата";
+        }
+    }
 
+    public byte[] readClassBytes(File jarFile, String className) throws IOException {
+        DecompilerSession current = acquireSession(jarFile);
+        if (current != null) {
+            try {
+                byte[] bytes = current.getClassSource().getClassBytes(className);
+                if (bytes == null) {
+                    throw new IOException("Класс не найден: " + className);
+                }
+                return bytes;
+            } finally {
+                current.release();
+            }
+        }
+
+        try (java.util.jar.JarFile jar = new java.util.jar.JarFile(jarFile)) {
+            java.util.jar.JarEntry entry = jar.getJarEntry(className);
+            if (entry == null) {
+                throw new IOException("Класс не найден: " + className);
+            }
+            try (InputStream is = jar.getInputStream(entry)) {
+                return is.readAllBytes();
+            }
+        }
+    }
+
+    public DecompiledSourceCache getSourceCache() {
+        return sourceCache;
+    }
+
+    private String decompileCached(JarClassFileSource source, File jarFile, java.util.jar.JarEntry entry,
+                                   boolean store) throws DecompilationException {
+        String cacheKey = memoryKey(source, jarFile, entry);
+        String cached = sourceCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            return decompileAndStore(source, entry.getName(), cacheKey,
+                    diskCache.isEnabled() ? diskKey(source, entry.getName(), source.getClassBytes(entry.getName())) : null,
+                    store);
+        } catch (DecompilationException e) {
+            throw e;
         } catch (Exception e) {
-            return "// Ошибка декомпиляции: " + e.getMessage();
+            throw new DecompilationException("Ошибка декомпиляции: " + e.getMessage(), e);
+        }
+    }
+
+    // Ключ дискового кэша: байткод, который увидит CFR (класс или его срез), все вложенные классы,
+    // которые он встроит в результат, и окружение анализа (API, JDK)
+    private static String diskKey(JarClassFileSource source, String classPath, byte[] classBytes) throws IOException {
+        List<byte[]> parts = new ArrayList<>();
+        parts.add(classBytes);
+        for (String nested : source.getNestedClasses(classPath)) {
+            byte[] bytes = source.getClassBytes(nested);
+            if (bytes != null) {
+                parts.add(nested.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                parts.add(bytes);
+            }
+        }
+        return DiskDecompilationCache.key(parts, OPTIONS_FINGERPRINT + "|" + source.getFingerprint());
+    }
+
+    // diskKey - ключ дискового кэша, null - без дискового кэша; store = false - только чтение кэшей
+    private String decompileAndStore(ClassFileSource source, String classPath, String cacheKey, String diskKey,
+                                     boolean store) throws DecompilationException {
+        if (diskKey != null) {
+            String stored = diskCache.get(diskKey);
+            if (stored != null) {
+                if (store) {
+                    sourceCache.put(cacheKey, stored);
+                }
+                return stored;
+            }
+        }
+
+        String code = decompileWithCFR(source, classPath);
+        if (Thread.currentThread().isInterrupted()) {
+            // Результат прерванного анализа может быть неполным - не кэшируем
+            throw new DecompilationException("Декомпиляция отменена");
+        }
+        if (code == null) {
+            throw new DecompilationException("Нет результата");
+        }
+
+        // Ошибки не кэшируем - только успешный результат
+        if (!store) {
+            return code;
+        }
+        sourceCache.put(cacheKey, code);
+        if (diskKey != null) {
+            diskCache.put(diskKey, code);
         }
+        return code;
+    }
+
+    private String decompileWithCFR(ClassFileSource source, String classPath) {
+        List<String> result = new ArrayList<>();
+
+        OutputSinkFactory sinkFactory = new OutputSinkFactory() {
+            @Override
+            public List<SinkClass> getSupportedSinks(SinkType sinkType, Collection<SinkClass> collection) {
+                return Arrays.asList(SinkClass.STRING, SinkClass.DECOMPILED);
+            }
+
+            @Override
+            public <T> Sink<T> getSink(SinkType sinkType, SinkClass sinkClass) {
+                return data -> {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Декомпиляция отменена");
+                    }
+                    if (sinkType == SinkType.JAVA && sinkClass == SinkClass.DECOMPILED) {
+                        if (data instanceof SinkReturns.Decompiled) {
+                            result.add(((SinkReturns.Decompiled) data).getJava());
+                        }
+                    } else if (sinkType == SinkType.JAVA && sinkClass == SinkClass.STRING) {
+                        result.add(data.toString());
+                    }
+                };
+            }
+        };
+
+        CfrDriver driver = new CfrDriver.Builder()
+                .withOverrideClassFileSource(source)
+                .withOptions(CFR_OPTIONS)
+                .withOutputSink(sinkFactory)
+                .build();
+
+        driver.analyse(Collections.singletonList(classPath));
+
+        return result.isEmpty() ? null : String.join("\n", result);
+    }
+
+    private static Map<String, String> createOptions() {
+        Map<String, String> options = new HashMap<>();
+        options.put("comments", "true");
+        options.put("sugarenums", "true");
+        options.put("decodeenumswitch", "true");
+        return Collections.unmodifiableMap(options);
     }
 
     public List<String> getClassesFromJar(File jarFile) throws IOException {
@@ -96,14 +539,13 @@ public class Decompiler {
         return classes;
     }
 
-    private void deleteDirectory(Path dir) {
-        try {
-            if (Files.exists(dir)) {
-                Files.walk(dir)
-                        .sorted(Comparator.reverseOrder())
-                        .map(Path::toFile)
-                        .forEach(File::delete);
-            }
-        } catch (Exception ignored) {}
+    public static class DecompilationException extends Exception {
+        public DecompilationException(String message) {
+            super(message);
+        }
+
+        public DecompilationException(String message, Throwable cause) {
+            super(message, cause);
+        }
     }
 }
\ No newline at end of file
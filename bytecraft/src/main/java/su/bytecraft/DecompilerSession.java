@@ -0,0 +1,115 @@
+package su.bytecraft;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.JarFile;
+
+// Долгоживущая сессия декомпиляции для открытого плагина:
+// JAR плагина и подходящий Spigot API держатся открытыми, байткод кэшируется между вызовами
+public class DecompilerSession implements Closeable {
+
+    private final File jarFile;
+    private final JarFile jar;
+    private final List<JarFile> libraries;
+    private final JarClassFileSource classSource;
+
+    // Сколько вызовов сейчас читают JAR сессии; JAR закрываются, когда закрыта сессия и ушел последний
+    private int users;
+    private boolean closed;
+
+    private DecompilerSession(File jarFile, JarFile jar, List<JarFile> libraries) {
+        this.jarFile = jarFile;
+        this.jar = jar;
+        this.libraries = libraries;
+
+        List<JarFile> all = new ArrayList<>();
+        all.add(jar);
+        all.addAll(libraries);
+        this.classSource = new JarClassFileSource(all, true);
+    }
+
+    public static DecompilerSession open(File jarFile) throws IOException {
+        System.out.println("🧠 Открытие сессии декомпиляции: " + jarFile.getName());
+
+        JarFile jar = new JarFile(jarFile);
+        List<JarFile> libraries = new ArrayList<>();
+
+        try {
+            VersionUtils.McVersion version = PluginVersionDetector.detectMcVersion(jarFile);
+            for (File api : new JavaCompiler().findBukkitDependenciesFromResources(version)) {
+                libraries.add(new JarFile(api));
+                System.out.println("   📚 API для анализа типов: " + api.getName());
+            }
+        } catch (Exception e) {
+            // Без API декомпиляция все равно работает, просто типы хуже выводятся
+            System.err.println("⚠️  Не удалось подключить Spigot API: " + e.getMessage());
+        }
+
+        return new DecompilerSession(jarFile, jar, libraries);
+    }
+
+    public boolean isFor(File file) {
+        return file != null && jarFile.getAbsoluteFile().equals(file.getAbsoluteFile());
+    }
+
+    public File getJarFile() {
+        return jarFile;
+    }
+
+    public JarFile getJar() {
+        return jar;
+    }
+
+    public boolean hasClass(String className) {
+        return jar.getJarEntry(className) != null;
+    }
+
+    public JarClassFileSource getClassSource() {
+        return classSource;
+    }
+
+    // false - сессия уже закрыта, JAR брать нельзя. После true обязателен release()
+    public synchronized boolean acquire() {
+        if (closed) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+
+    public synchronized void release() {
+        if (--users == 0 && closed) {
+            closeJars();
+        }
+    }
+
+    // Запуски CFR, которые еще читают классы сессии (экспорт, зависший класс), дорабатывают на открытых JAR:
+    // иначе CFR получил бы "zip file closed" посреди анализа
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (users > 0) {
+            System.out.println("🧠 Сессия " + jarFile.getName() + " закроется после " + users + " незавершенных вызовов");
+            return;
+        }
+        closeJars();
+    }
+
+    private void closeJars() {
+        System.out.println("🧠 Сессия закрыта: " + jarFile.getName() +
+                " (классов в кэше: " + classSource.getCachedClassCount() + ")");
+        closeQuietly(jar);
+        for (JarFile library : libraries) {
+            closeQuietly(library);
+        }
+    }
+
+    private static void closeQuietly(JarFile file) {
+        try {
+            file.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,254 @@
+package su.bytecraft;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Постоянный кэш вывода CFR на диске, адресуемый по содержимому:
+// ключ = SHA-256(байткод класса и его вложенных классов + версия и опции CFR + окружение анализа).
+// Папку можно сделать общей для команды.
+public class DiskDecompilationCache {
+
+    // -Dbytecraft.diskCache.dir=... (общая папка), -Dbytecraft.diskCache.maxBytes=... (0 - выключить)
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    private static final String LOCK_FILE = ".lock";
+    private static final String SUFFIX = ".java.gz";
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000L;
+
+    private final Path root;
+    private final long maxBytes;
+    private final AtomicLong writtenSinceCheck = new AtomicLong(Long.MAX_VALUE / 2);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DiskDecompilationCache() {
+        this(Paths.get(System.getProperty("bytecraft.diskCache.dir",
+                        System.getProperty("user.home") + File.separator + ".bytecraft" + File.separator + "cfr-cache")),
+                Long.getLong("bytecraft.diskCache.maxBytes", DEFAULT_MAX_BYTES));
+    }
+
+    public DiskDecompilationCache(Path root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    // classes - все, что CFR читает как часть результата (внешний класс, вложенные с их именами)
+    public static String key(List<byte[]> classes, String optionsFingerprint) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : classes) {
+                // Длина перед каждой частью: границы частей не сдвигаются
+                int length = part.length;
+                sha.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+                sha.update(part);
+            }
+            sha.update((byte) 0);
+            sha.update(optionsFingerprint.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : sha.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    public String get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Path file = pathFor(key);
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(file), 8192)) {
+            String source = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            hits.incrementAndGet();
+
+            // Отметка использования для LRU-вытеснения (не критично, если не получилось)
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {}
+
+            return source;
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            System.err.println("⚠️  Не удалось прочитать дисковый кэш " + file.getFileName() + ": " + e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(String key, String source) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Path file = pathFor(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            if (Files.exists(file)) {
+                return;
+            }
+
+            // Пишем во временный файл рядом и атомарно переименовываем:
+            // другие процессы никогда не увидят недописанную запись
+            temp = Files.createTempFile(file.getParent(), key.substring(0, 8) + "_", ".tmp");
+            try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(temp), 8192)) {
+                os.write(source.getBytes(StandardCharsets.UTF_8));
+            }
+
+            long size = Files.size(temp);
+            moveIntoPlace(temp, file);
+            temp = null;
+
+            if (writtenSinceCheck.addAndGet(size) > maxBytes / 16) {
+                writtenSinceCheck.set(0);
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  Не удалось записать дисковый кэш: " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Другой процесс успел записать тот же ключ - содержимое идентично
+            Files.deleteIfExists(temp);
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(temp, file);
+            } catch (FileAlreadyExistsException ignored) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    // Вытеснение по размеру: самые давно использованные записи удаляются первыми.
+    // Выполняет только тот процесс, который захватил .lock - остальные пропускают проверку.
+    public void evictIfNeeded() {
+        if (!isEnabled() || !Files.isDirectory(root)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(root.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return;
+            }
+            if (lock == null) {
+                return;
+            }
+
+            try {
+                evictLocked();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  Ошибка очистки дискового кэша: " + e.getMessage());
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        List<CacheFile> files = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long total = 0;
+
+        try (Stream<Path> stream = Files.walk(root, 2)) {
+            for (Path path : stream.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = path.getFileName().toString();
+                try {
+                    long modified = Files.getLastModifiedTime(path).toMillis();
+                    if (name.endsWith(".tmp")) {
+                        // Остатки от упавших процессов
+                        if (now - modified > STALE_TEMP_MILLIS) {
+                            Files.deleteIfExists(path);
+                        }
+                    } else if (name.endsWith(SUFFIX)) {
+                        long size = Files.size(path);
+                        files.add(new CacheFile(path, size, modified));
+                        total += size;
+                    }
+                } catch (IOException ignored) {
+                    // Файл удалил другой процесс - пропускаем
+                }
+            }
+        }
+
+        if (total <= maxBytes) {
+            return;
+        }
+
+        // Чистим с запасом до 90%, чтобы не запускать вытеснение на каждую запись
+        long target = maxBytes * 9 / 10;
+        files.sort(Comparator.comparingLong(f -> f.lastUsed));
+        int removed = 0;
+        for (CacheFile file : files) {
+            if (total <= target) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file.path);
+                total -= file.size;
+                removed++;
+            } catch (IOException ignored) {
+                // На Windows файл может быть открыт другим процессом
+            }
+        }
+
+        System.out.println("🧹 Дисковый кэш: удалено " + removed + " записей, размер " + total / 1024 + " КБ");
+    }
+
+    private Path pathFor(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    public String getStats() {
+        return "дисковый кэш " + root + ": попаданий " + hits.get() + ", промахов " + misses.get();
+    }
+
+    private static class CacheFile {
+        final Path path;
+        final long size;
+        final long lastUsed;
+
+        CacheFile(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
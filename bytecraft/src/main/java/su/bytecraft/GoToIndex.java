@@ -0,0 +1,382 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// Индекс для палитры "перейти к классу/члену" (Ctrl+N). Имена отсортированы без учета регистра:
+// префикс - это двоичный поиск, а кандидаты для горбатого поиска ("PJL" -> PlayerJoinListener)
+// лежат подряд - у них та же первая буква. Отдельно отсортированы хвосты имен от каждого слова
+// ("node" для NGNode), так что совпадение с середины имени - тоже двоичный поиск, а не просмотр JAR.
+public class GoToIndex {
+
+    public enum Kind {
+        CLASS("📄"),
+        METHOD("ƒ"),
+        FIELD("▪");
+
+        public final String icon;
+
+        Kind(String icon) {
+            this.icon = icon;
+        }
+    }
+
+    // Уровни совпадения: чем меньше, тем выше в списке
+    private static final int EXACT = 0;
+    private static final int EXACT_IGNORE_CASE = 1;
+    private static final int PREFIX = 2;
+    private static final int CAMEL_HUMP = 3;
+    private static final int WORD_PREFIX = 4;
+
+    private final File jarFile;
+    private final long jarModified;
+    private final List<Entry> entries = new ArrayList<>();
+    // Номера записей, отсортированные по имени в нижнем регистре, и позиция записи в этом порядке
+    private int[] sorted;
+    private String[] sortedNames;
+    private int[] positions;
+    // Хвосты имен от начала каждого слова, кроме первого (в нижнем регистре, по алфавиту) и их записи
+    private String[] wordTails;
+    private int[] wordTailEntries;
+
+    private GoToIndex(File jarFile) {
+        this.jarFile = jarFile.getAbsoluteFile();
+        this.jarModified = this.jarFile.lastModified();
+    }
+
+    public static GoToIndex build(File jarFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        GoToIndex index = new GoToIndex(jarFile);
+
+        try (JarFile jar = new JarFile(jarFile)) {
+            Enumeration<JarEntry> all = jar.entries();
+            while (all.hasMoreElements()) {
+                JarEntry entry = all.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class") ||
+                        entry.getName().endsWith("module-info.class")) {
+                    continue;
+                }
+                try (InputStream is = jar.getInputStream(entry)) {
+                    index.addClass(entry.getName(), is.readAllBytes());
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️  Пропущен в индексе перехода: " + entry.getName() + " (" + e + ")");
+                }
+            }
+        }
+        index.freeze();
+
+        System.out.println("🧭 Индекс перехода " + jarFile.getName() + ": " + index.entries.size() + " имен, " +
+                (System.currentTimeMillis() - startTime) + " мс");
+        return index;
+    }
+
+    public boolean isFor(File file) {
+        return jarFile.equals(file.getAbsoluteFile()) && jarModified == file.lastModified();
+    }
+
+    // Лучшие совпадения: точное имя, префикс, горбы, затем начало слова в середине имени;
+    // классы выше членов, короткие выше длинных.
+    // "Класс.член" ищет член среди классов, чье имя подходит под первую часть.
+    public List<Entry> find(String text, int limit) {
+        String query = text.trim();
+        List<Entry> result = new ArrayList<>();
+        if (query.isEmpty()) {
+            return result;
+        }
+
+        String ownerQuery = null;
+        int dot = query.lastIndexOf('.');
+        if (dot > 0) {
+            ownerQuery = query.substring(0, dot);
+            query = query.substring(dot + 1);
+            if (query.isEmpty()) {
+                // "Класс." - все члены класса
+                query = null;
+            }
+        }
+
+        // Ключ сортировки: уровень | вид | длина имени | позиция в алфавитном порядке
+        long[] keys = new long[64];
+        int count = 0;
+        if (query == null) {
+            for (int pos = 0; pos < sorted.length; pos++) {
+                Entry entry = entries.get(sorted[pos]);
+                if (entry.kind != Kind.CLASS && ownerMatches(entry, ownerQuery)) {
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                    }
+                    keys[count++] = key(PREFIX, entry, pos);
+                }
+            }
+        } else {
+            String lower = query.toLowerCase(Locale.ROOT);
+            int prefixFrom = lowerBound(sortedNames, lower);
+            int prefixTo = lowerBound(sortedNames, lower + Character.MAX_VALUE);
+            // Горбы и середина имени ранжируются ниже префикса: если префиксов хватает, их не ищем
+            boolean enoughPrefixes = ownerQuery == null && prefixTo - prefixFrom >= limit;
+            int from = enoughPrefixes ? prefixFrom : lowerBound(sortedNames, lower.substring(0, 1));
+            int to = enoughPrefixes ? prefixTo : lowerBound(sortedNames, lower.substring(0, 1) + Character.MAX_VALUE);
+
+            for (int pos = from; pos < to; pos++) {
+                Entry entry = entries.get(sorted[pos]);
+                int level;
+                if (pos >= prefixFrom && pos < prefixTo) {
+                    level = entry.name.equals(query) ? EXACT
+                            : sortedNames[pos].length() == lower.length() ? EXACT_IGNORE_CASE : PREFIX;
+                } else if (isSubsequence(lower, sortedNames[pos]) && matchesHumps(query, entry.name)) {
+                    level = CAMEL_HUMP;
+                } else {
+                    continue;
+                }
+                if (ownerMatches(entry, ownerQuery)) {
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                    }
+                    keys[count++] = key(level, entry, pos);
+                }
+            }
+
+            if (!enoughPrefixes) {
+                int tailFrom = lowerBound(wordTails, lower);
+                int tailTo = lowerBound(wordTails, lower + Character.MAX_VALUE);
+                BitSet seen = new BitSet();
+                for (int i = tailFrom; i < tailTo; i++) {
+                    int id = wordTailEntries[i];
+                    int pos = positions[id];
+                    Entry entry = entries.get(id);
+                    // Имена на ту же букву уже оценены выше (префикс или горбы)
+                    if ((pos >= from && pos < to) || seen.get(id) || !ownerMatches(entry, ownerQuery)) {
+                        continue;
+                    }
+                    seen.set(id);
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                    }
+                    keys[count++] = key(WORD_PREFIX, entry, pos);
+                }
+            }
+        }
+
+        Arrays.sort(keys, 0, count);
+        for (int i = 0; i < Math.min(count, limit); i++) {
+            result.add(entries.get(sorted[(int) (keys[i] & 0xFFFFFFFFL)]));
+        }
+        return result;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    private static long key(int level, Entry entry, int pos) {
+        return ((long) level << 50) | ((long) entry.kind.ordinal() << 48) |
+                ((long) Math.min(entry.name.length(), 0xFFFF) << 32) | pos;
+    }
+
+    private boolean ownerMatches(Entry entry, String ownerQuery) {
+        if (ownerQuery == null) {
+            return true;
+        }
+        String lowerQuery = ownerQuery.toLowerCase(Locale.ROOT);
+        if (entry.kind == Kind.CLASS) {
+            // Для класса "a.b.C" первая часть запроса - пакет
+            return entry.qualifier.toLowerCase(Locale.ROOT).endsWith(lowerQuery);
+        }
+        return entry.ownerName.toLowerCase(Locale.ROOT).startsWith(lowerQuery) ||
+                matchesHumps(ownerQuery, entry.ownerName);
+    }
+
+    // Первая позиция, где строка >= text
+    private static int lowerBound(String[] names, String text) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].compareTo(text) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Дешевая отсечка перед горбами: все символы запроса есть в имени по порядку
+    private static boolean isSubsequence(String lowerQuery, String lowerName) {
+        int q = 0;
+        for (int n = 0; n < lowerName.length() && q < lowerQuery.length(); n++) {
+            if (lowerName.charAt(n) == lowerQuery.charAt(q)) {
+                q++;
+            }
+        }
+        return q == lowerQuery.length();
+    }
+
+    // Каждый символ запроса продолжает текущее слово имени или начинает одно из следующих:
+    // "PJL", "PlaJoiL", "pjlis" -> PlayerJoinListener. Первый символ - всегда начало имени.
+    static boolean matchesHumps(String query, String name) {
+        if (query.isEmpty() || name.isEmpty() ||
+                Character.toLowerCase(query.charAt(0)) != Character.toLowerCase(name.charAt(0))) {
+            return false;
+        }
+        return matchesHumps(query, 1, name, 1);
+    }
+
+    private static boolean matchesHumps(String query, int q, String name, int n) {
+        if (q == query.length()) {
+            return true;
+        }
+        char wanted = Character.toLowerCase(query.charAt(q));
+        if (n < name.length() && Character.toLowerCase(name.charAt(n)) == wanted &&
+                matchesHumps(query, q + 1, name, n + 1)) {
+            return true;
+        }
+        for (int w = n + 1; w < name.length(); w++) {
+            if (isWordStart(name, w) && Character.toLowerCase(name.charAt(w)) == wanted &&
+                    matchesHumps(query, q + 1, name, w + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordStart(String name, int i) {
+        char c = name.charAt(i);
+        char previous = name.charAt(i - 1);
+        if (previous == '_' || previous == '$') {
+            return c != '_' && c != '$';
+        }
+        if (Character.isUpperCase(c)) {
+            // "HTTPServer": S начинает слово, T внутри аббревиатуры - нет
+            return !Character.isUpperCase(previous) ||
+                    (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1)));
+        }
+        return Character.isDigit(c) && !Character.isDigit(previous);
+    }
+
+    // ========== ПОСТРОЕНИЕ ==========
+
+    private void addClass(String classEntry, byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        String internalName = reader.getClassName();
+        String simpleName = simpleClassName(classEntry);
+        // Анонимные и локальные классы (Outer$1, Outer$1Local) по имени не ищут
+        if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0 || simpleName.isEmpty() ||
+                Character.isDigit(simpleName.charAt(0))) {
+            return;
+        }
+        int slash = internalName.lastIndexOf('/');
+        String packageName = slash < 0 ? "" : internalName.substring(0, slash).replace('/', '.');
+        entries.add(new Entry(simpleName, Kind.CLASS, classEntry, packageName));
+        String owner = internalName.replace('/', '.');
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor,
+                                           String signature, Object value) {
+                if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
+                    entries.add(new Entry(name, Kind.FIELD, classEntry,
+                            owner + " : " + shortType(Type.getType(descriptor))));
+                }
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                if ((access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0 && !name.startsWith("<")) {
+                    StringBuilder detail = new StringBuilder(owner).append(" (");
+                    Type[] arguments = Type.getArgumentTypes(descriptor);
+                    for (int i = 0; i < arguments.length; i++) {
+                        detail.append(i > 0 ? ", " : "").append(shortType(arguments[i]));
+                    }
+                    detail.append(") : ").append(shortType(Type.getReturnType(descriptor)));
+                    entries.add(new Entry(name, Kind.METHOD, classEntry, detail.toString()));
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+
+    private void freeze() {
+        Integer[] order = new Integer[entries.size()];
+        String[] lowerNames = new String[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            lowerNames[i] = entries.get(i).name.toLowerCase(Locale.ROOT);
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> lowerNames[i]));
+        sorted = new int[order.length];
+        sortedNames = new String[order.length];
+        positions = new int[order.length];
+        for (int pos = 0; pos < order.length; pos++) {
+            sorted[pos] = order[pos];
+            sortedNames[pos] = lowerNames[order[pos]];
+            positions[order[pos]] = pos;
+        }
+
+        List<String> tails = new ArrayList<>();
+        List<Integer> tailEntries = new ArrayList<>();
+        for (int id = 0; id < entries.size(); id++) {
+            String name = entries.get(id).name;
+            for (int i = 1; i < name.length(); i++) {
+                if (isWordStart(name, i)) {
+                    tails.add(lowerNames[id].substring(i));
+                    tailEntries.add(id);
+                }
+            }
+        }
+        Integer[] tailOrder = new Integer[tails.size()];
+        for (int i = 0; i < tailOrder.length; i++) {
+            tailOrder[i] = i;
+        }
+        Arrays.sort(tailOrder, Comparator.comparing(tails::get));
+        wordTails = new String[tailOrder.length];
+        wordTailEntries = new int[tailOrder.length];
+        for (int i = 0; i < tailOrder.length; i++) {
+            wordTails[i] = tails.get(tailOrder[i]);
+            wordTailEntries[i] = tailEntries.get(tailOrder[i]);
+        }
+    }
+
+    // "a/b/Outer$Inner.class" -> "Inner"
+    private static String simpleClassName(String classEntry) {
+        String name = classEntry.substring(classEntry.lastIndexOf('/') + 1).replace(".class", "");
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private static String shortType(Type type) {
+        String name = type.getClassName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    public static class Entry {
+        public final String name;
+        public final Kind kind;
+        // Запись класса в JAR ("a/b/C.class"), который открывается
+        public final String classEntry;
+        // Пакет класса или владелец и сигнатура члена
+        public final String qualifier;
+        // Простое имя класса-владельца члена (для запросов "Класс.член")
+        final String ownerName;
+
+        Entry(String name, Kind kind, String classEntry, String qualifier) {
+            this.name = name;
+            this.kind = kind;
+            this.classEntry = classEntry;
+            this.qualifier = qualifier;
+            this.ownerName = simpleClassName(classEntry);
+        }
+
+        @Override
+        public String toString() {
+            return kind.icon + " " + name + (qualifier.isEmpty() ? "" : "   — " + qualifier);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package su.bytecraft;
+
+import org.benf.cfr.reader.api.ClassFileSource;
+import org.benf.cfr.reader.bytecode.analysis.parse.utils.Pair;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// Источник классов для CFR, читающий байткод прямо из открытых JAR (без распаковки на диск)
+public class JarClassFileSource implements ClassFileSource {
+
+    private final List<JarFile> jars;
+    private final boolean includeJdk;
+
+    // Кэш байткода: повторные обращения CFR к тем же классам не читают JAR заново
+    private final Map<String, byte[]> cache = new ConcurrentHashMap<>();
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    // Отсортированные имена классов первого JAR (для поиска вложенных), строятся при первом запросе
+    private volatile String[] primaryClasses;
+    private final String fingerprint;
+
+    // Разовая декомпиляция: только JAR плагина, но классы JDK нужны и здесь - иначе CFR не выведет их типы
+    public JarClassFileSource(JarFile jar) {
+        this(Collections.singletonList(jar), true);
+    }
+
+    // jars - в порядке приоритета (сначала плагин, потом API), includeJdk - искать и классы JDK
+    public JarClassFileSource(List<JarFile> jars, boolean includeJdk) {
+        this.jars = new ArrayList<>(jars);
+        this.includeJdk = includeJdk;
+        this.fingerprint = createFingerprint();
+    }
+
+    // Что еще видит CFR кроме самого плагина: библиотеки (API) и JDK. Входит в ключ дискового кэша,
+    // т.к. с контекстом и без него типы выводятся по-разному
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    // Вложенные классы ("a/B.class" -> "a/B$1.class", "a/B$Inner.class", ...): CFR встраивает их во внешний
+    public List<String> getNestedClasses(String className) {
+        String[] names = primaryClasses;
+        if (names == null) {
+            names = jars.isEmpty() ? new String[0] : jars.get(0).stream()
+                    .map(JarEntry::getName)
+                    .filter(name -> name.endsWith(".class"))
+                    .sorted()
+                    .toArray(String[]::new);
+            primaryClasses = names;
+        }
+
+        String prefix = className.substring(0, className.length() - ".class".length()) + "$";
+        int from = Arrays.binarySearch(names, prefix);
+        List<String> nested = new ArrayList<>();
+        for (int i = from < 0 ? -from - 1 : from; i < names.length && names[i].startsWith(prefix); i++) {
+            nested.add(names[i]);
+        }
+        return nested;
+    }
+
+    private String createFingerprint() {
+        StringBuilder sb = new StringBuilder("jdk=").append(includeJdk ? Runtime.version().feature() : "-");
+        // Первый JAR - сам плагин: его классы попадают в ключ байткодом
+        for (int i = 1; i < jars.size(); i++) {
+            File library = new File(jars.get(i).getName());
+            sb.append(';').append(library.getName()).append(':').append(library.length());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void informAnalysisRelativePathDetail(String usePath, String classFilePath) {
+        // Все пути уже относительны корня JAR - ничего делать не нужно
+    }
+
+    @Override
+    public Collection<String> addJar(String jarPath) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getPossiblyRenamedPath(String path) {
+        return path;
+    }
+
+    @Override
+    public Pair<byte[], String> getClassFileContent(String path) throws IOException {
+        byte[] bytes = getClassBytes(path);
+        // Запасного источника у CFR нет: ненайденный класс он помечает как недоступный
+        // (CannotLoadClassException) и продолжает без него
+        if (bytes == null) {
+            throw new FileNotFoundException("Класс не найден: " + path);
+        }
+        return Pair.make(bytes, path);
+    }
+
+    public byte[] getClassBytes(String path) throws IOException {
+        // Точка кооперативной отмены: CFR постоянно подгружает классы по ходу анализа
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Декомпиляция отменена");
+        }
+
+        byte[] cached = cache.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        if (missing.contains(path)) {
+            return null;
+        }
+
+        byte[] bytes = readClassBytes(path);
+        if (bytes == null) {
+            missing.add(path);
+            return null;
+        }
+
+        cache.put(path, bytes);
+        return bytes;
+    }
+
+    public int getCachedClassCount() {
+        return cache.size();
+    }
+
+    private byte[] readClassBytes(String path) throws IOException {
+        for (JarFile jar : jars) {
+            JarEntry entry = jar.getJarEntry(path);
+            if (entry != null) {
+                try (InputStream is = jar.getInputStream(entry)) {
+                    return is.readAllBytes();
+                }
+            }
+        }
+
+        if (includeJdk) {
+            // Platform loader видит только модули JDK, а не классы самого ByteCraft
+            try (InputStream is = ClassLoader.getPlatformClassLoader().getResourceAsStream(path)) {
+                if (is != null) {
+                    return is.readAllBytes();
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -3,8 +3,6 @@ package su.bytecraft;
 import org.objectweb.asm.*;
 
 import java.io.*;
-import java.nio.file.*;
-import java.util.jar.*;
 import java.util.*;
 
 public class JarPatcher {
@@ -17,68 +15,48 @@ public class JarPatcher {
 
     public File createPatchedJarFromModifiedClass(File originalJar, String className,
                                                   String modifiedJavaCode) throws Exception {
-        // Создаем временный файл для пропатченного JAR
-        Path tempJar = Files.createTempFile("patched", ".jar");
-
-        try (JarInputStream jis = new JarInputStream(new FileInputStream(originalJar));
-             JarOutputStream jos = new JarOutputStream(new FileOutputStream(tempJar.toFile()))) {
-
-            // Получаем classpath
-            List<File> classpath = getClasspathFromJar(originalJar);
+        return applyPatchSet(new PatchSet(originalJar).addClass(className, modifiedJavaCode));
+    }
 
+    // Все классы набора компилируются вместе, затем JAR пишется одним проходом.
+    // Ошибка компиляции или записи не создает и не портит никаких файлов рядом с оригиналом
+    public File applyPatchSet(PatchSet patch) throws Exception {
+        if (patch.isEmpty()) {
+            throw new IllegalArgumentException("Патч пуст: нет ни классов, ни ресурсов");
+        }
+        File originalJar = patch.getOriginalJar();
 
-            System.out.println("📦 Начинаем патчинг JAR: " + originalJar.getName());
+        System.out.println("📦 Начинаем патчинг JAR: " + originalJar.getName() + " (" + patch + ")");
+        for (String className : patch.getSources().keySet()) {
             System.out.println("🔧 Класс для патча: " + className);
+        }
 
-            JarEntry entry;
-            while ((entry = jis.getNextJarEntry()) != null) {
-                String entryName = entry.getName();
-                byte[] entryData;
-
-                // Проверяем, это ли нужный нам класс
-                String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
-                String expectedClassPath = className.replace('.', '/') + ".class";
-
-                if (entryName.equals(expectedClassPath)) {
-                    System.out.println("⚡ Найден класс для компиляции: " + entryName);
-
-                    // Компилируем измененный Java код
-                    try {
-                        entryData = compiler.compileJavaSource(modifiedJavaCode, simpleClassName, classpath);
-                        System.out.println("✅ Успешно скомпилирован: " + className);
-                    } catch (JavaCompiler.CompilationException e) {
-                        System.err.println("❌ Ошибка компиляции:");
-                        System.err.println(e.getMessage());
-                        throw e;
-                    } catch (Exception e) {
-                        System.err.println("❌ Неожиданная ошибка компиляции:");
-                        e.printStackTrace();
-                        throw new RuntimeException("Ошибка компиляции " + className + ": " + e.getMessage(), e);
-                    }
-                } else {
-                    // Копируем как есть
-                    entryData = jis.readAllBytes();
-                }
-
-                JarEntry newEntry = new JarEntry(entryName);
-                jos.putNextEntry(newEntry);
-                jos.write(entryData);
-                jos.closeEntry();
-                jis.closeEntry();
+        Map<String, byte[]> compiled = Collections.emptyMap();
+        if (!patch.getSources().isEmpty()) {
+            // Получаем classpath
+            List<File> classpath = getClasspathFromJar(originalJar);
+            try {
+                compiled = compiler.compileJavaSources(patch.getSources(), classpath, originalJar);
+            } catch (JavaCompiler.CompilationException e) {
+                System.err.println("❌ Ошибка компиляции:");
+                System.err.println(e.getMessage());
+                throw e;
+            } catch (Exception e) {
+                System.err.println("❌ Неожиданная ошибка компиляции:");
+                e.printStackTrace();
+                throw new RuntimeException("Ошибка компиляции " + patch.getSources().keySet() + ": " + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            Files.deleteIfExists(tempJar);
-            throw e;
         }
 
-        // Создаем пропатченный файл рядом с оригиналом
-        String newName = originalJar.getName().replace(".jar", "_PATCHED.jar");
-        File patchedJar = new File(originalJar.getParent(), newName);
+        // Заменяются и вложенные классы ($1, $Inner); остальные записи копируются сжатыми байтами
+        JarRewriter rewriter = new JarRewriter(originalJar);
+        compiled.forEach(rewriter::replace);
+        patch.getResources().forEach(rewriter::replace);
 
+        // Пропатченный файл рядом с оригиналом: пишется сразу туда, через атомарное переименование
+        File patchedJar = patchedFile(originalJar, "_PATCHED");
         System.out.println("💾 Сохраняем пропатченный JAR как: " + patchedJar.getName());
-
-        Files.copy(tempJar, patchedJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        Files.delete(tempJar);
+        rewriter.writeTo(patchedJar);
 
         System.out.println("✅ Пропатченный JAR создан: " + patchedJar.getAbsolutePath());
         System.out.println("📊 Размер: " + patchedJar.length() + " байт");
@@ -86,6 +64,13 @@ public class JarPatcher {
         return patchedJar;
     }
 
+    // plugin.jar -> plugin_PATCHED.jar (и для .JAR, и для имени без расширения - но никогда не сам оригинал)
+    private static File patchedFile(File originalJar, String suffix) {
+        String name = originalJar.getName();
+        int dot = name.toLowerCase().endsWith(".jar") ? name.length() - 4 : name.length();
+        return new File(originalJar.getAbsoluteFile().getParentFile(), name.substring(0, dot) + suffix + ".jar");
+    }
+
     private List<File> getClasspathFromJar(File jarFile) {
         List<File> classpath = new ArrayList<>();
         classpath.add(jarFile);
@@ -137,40 +122,25 @@ public class JarPatcher {
 
     // Простая замена строк в байткоде - альт метод
     public File createPatchedJarWithStringReplacement(File originalJar, String oldString, String newString) throws Exception {
-        Path tempJar = Files.createTempFile("patched_string", ".jar");
-
-        try (JarInputStream jis = new JarInputStream(new FileInputStream(originalJar));
-             JarOutputStream jos = new JarOutputStream(new FileOutputStream(tempJar.toFile()))) {
-
-            JarEntry entry;
-            while ((entry = jis.getNextJarEntry()) != null) {
-                byte[] entryData;
-
-                if (entry.getName().endsWith(".class")) {
-                    entryData = replaceStringInClass(jis.readAllBytes(), oldString, newString);
-                } else {
-                    entryData = jis.readAllBytes();
-                }
-
-                JarEntry newEntry = new JarEntry(entry.getName());
-                jos.putNextEntry(newEntry);
-                jos.write(entryData);
-                jos.closeEntry();
-                jis.closeEntry();
-            }
-        }
+        File patchedJar = patchedFile(originalJar, "_STRING_PATCHED");
 
-        String newName = originalJar.getName().replace(".jar", "_STRING_PATCHED.jar");
-        File patchedJar = new File(originalJar.getParent(), newName);
-        Files.copy(tempJar, patchedJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        Files.delete(tempJar);
+        // Распаковываются только классы; полный разбор ASM - только у тех, где строка есть в пуле
+        // констант. Остальные классы и ресурсы копируются сжатыми байтами как есть
+        byte[] needle = ConstantPoolScanner.encode(oldString);
+        new JarRewriter(originalJar)
+                .transform(name -> name.endsWith(".class"),
+                        (name, data) -> ConstantPoolScanner.containsUtf8(data, needle)
+                                ? replaceStringInClass(data, oldString, newString) : null)
+                .writeTo(patchedJar);
 
         return patchedJar;
     }
 
+    // null - в классе нет такой строки
     private byte[] replaceStringInClass(byte[] classBytes, String oldString, String newString) {
         ClassReader cr = new ClassReader(classBytes);
         ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        boolean[] changed = new boolean[1];
 
         ClassVisitor cv = new ClassVisitor(Opcodes.ASM9, cw) {
             @Override
@@ -185,11 +155,13 @@ public class JarPatcher {
                             String str = (String) value;
                             // Заменяем строку если она полностью совпадает
                             if (str.equals(oldString)) {
+                                changed[0] = true;
                                 super.visitLdcInsn(newString);
                                 return;
                             }
                             // Или заменяем часть строки
                             if (str.contains(oldString)) {
+                                changed[0] = true;
                                 super.visitLdcInsn(str.replace(oldString, newString));
                                 return;
                             }
@@ -201,7 +173,7 @@ public class JarPatcher {
         };
 
         cr.accept(cv, 0);
-        return cw.toByteArray();
+        return changed[0] ? cw.toByteArray() : null;
     }
 
     private void log(String message) {
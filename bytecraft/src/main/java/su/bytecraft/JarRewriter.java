@@ -0,0 +1,707 @@
+package su.bytecraft;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.zip.*;
+
+// Пересборка JAR с заменой отдельных записей. Неизмененные записи копируются как есть: сжатые байты,
+// CRC и размеры берутся из центрального каталога, без распаковки и повторного сжатия. Поэтому время
+// патча зависит от размера изменений, а не от размера JAR (шейженные библиотеки просто переносятся).
+// Запись - конвейер: поток чтения раздает записи пулу (распаковка, правка, сжатие параллельно),
+// единственный поток записи забирает их из ограниченной очереди в исходном порядке.
+public class JarRewriter {
+
+    public interface Transformer {
+        // Новое содержимое записи или null, если запись не изменилась (тогда она копируется как есть).
+        // Вызывается параллельно из нескольких потоков
+        byte[] transform(String name, byte[] data) throws Exception;
+    }
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_SIZE = 22;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int FLAG_UTF8 = 0x800;
+    // Буфер записи: крупные блоки важны для сетевых папок плагинов
+    private static final int OUTPUT_BUFFER = 1024 * 1024;
+    // Распакованных/сжатых записей в работе на поток пула: чтение ждет, пока запись не догонит
+    private static final int IN_FLIGHT_PER_THREAD = 16;
+    // Записи "копировать как есть" памяти не занимают, очередь для них длинная, чтобы потоки реже будили друг друга
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final File source;
+    // Замены и новые записи, в порядке добавления
+    private final Map<String, byte[]> replacements = new LinkedHashMap<>();
+    private Predicate<String> transformFilter;
+    private Transformer transformer;
+
+    public JarRewriter(File source) {
+        this.source = source;
+    }
+
+    // Новое содержимое записи; если такой записи в JAR нет - она добавляется в конец
+    public JarRewriter replace(String name, byte[] data) {
+        replacements.put(name, data);
+        return this;
+    }
+
+    // Преобразование записей, подходящих под фильтр: распаковываются только они
+    public JarRewriter transform(Predicate<String> filter, Transformer transformer) {
+        this.transformFilter = filter;
+        this.transformer = transformer;
+        return this;
+    }
+
+    // JAR пишется во временный файл в папке target и атомарно переименовывается в target:
+    // сервер видит либо прежний файл, либо новый целиком, но никогда - недописанный
+    public Result writeTo(File target) throws Exception {
+        long startTime = System.currentTimeMillis();
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(targetPath.getParent(), "." + target.getName() + "_", ".tmp");
+        try {
+            Result result;
+            try {
+                result = writeRaw(temp);
+            } catch (UnsupportedZipException e) {
+                // ZIP64 и прочие редкости - старый путь с полной перепаковкой
+                System.out.println("⚠️  " + source.getName() + ": " + e.getMessage() + ", JAR будет перепакован целиком");
+                result = writeRecompressed(temp);
+            }
+            copyPermissions(Files.exists(targetPath) ? targetPath : source.toPath(), temp);
+            moveIntoPlace(temp, targetPath);
+            temp = null;
+
+            result.elapsedMs = System.currentTimeMillis() - startTime;
+            System.out.println("📦 " + source.getName() + " -> " + target.getName() + ": " + result);
+            return result;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    // createTempFile создает файл только для владельца (rw-------): сервер, запущенный под другим
+    // пользователем, не прочитал бы такой JAR. Права берутся у прежнего файла или у исходного JAR
+    private static void copyPermissions(Path from, Path temp) {
+        try {
+            if (Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(from));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("⚠️  Не удалось перенести права доступа на " + temp.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ========== БЫСТРЫЙ ПУТЬ: КОПИРОВАНИЕ СЖАТЫХ ЗАПИСЕЙ ==========
+
+    private Result writeRaw(Path target) throws Exception {
+        Result result = new Result(true);
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            CentralDirectory directory = readCentralDirectory(in);
+
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "bytecraft-patch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            BlockingQueue<Slot> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+            Thread reader = new Thread(() -> produce(in, directory.entries, workers, queue, inFlight),
+                    "bytecraft-patch-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ZipOutput out = new ZipOutput(channel);
+                for (Slot slot = queue.take(); slot != Slot.END; slot = queue.take()) {
+                    Compressed content = null;
+                    if (slot.content != null) {
+                        content = await(slot.content);
+                        inFlight.release();
+                    }
+                    if (slot.entry == null) {
+                        out.writeEntry(slot.name, content, null);
+                        result.addedCount++;
+                    } else if (content != null) {
+                        out.writeEntry(slot.name, content, slot.entry);
+                        result.rewrittenCount++;
+                    } else {
+                        out.copyRaw(in, slot.entry);
+                        result.copiedCount++;
+                        result.copiedBytes += slot.entry.compressedSize;
+                    }
+                }
+                out.finish(directory.comment);
+                // На диск до переименования: после сбоя под именем JAR не окажется пустой файл
+                channel.force(true);
+            } finally {
+                // При ошибке записи чтение и преобразования больше не нужны
+                reader.interrupt();
+                workers.shutdownNow();
+            }
+        }
+        return result;
+    }
+
+    // Поток чтения: по порядку записей JAR кладет в очередь либо "копировать как есть", либо задачу пула.
+    // Задача берет разрешение inFlight, запись его возвращает: в памяти не больше threads * IN_FLIGHT_PER_THREAD записей
+    private void produce(FileChannel in, List<RawEntry> entries, ExecutorService workers,
+                         BlockingQueue<Slot> queue, Semaphore inFlight) {
+        try {
+            Set<String> names = new HashSet<>();
+            for (RawEntry entry : entries) {
+                names.add(entry.name);
+                byte[] replacement = replacements.get(entry.name);
+                Future<Compressed> content = null;
+                if (replacement != null) {
+                    inFlight.acquire();
+                    content = workers.submit(() -> Compressed.of(replacement));
+                } else if (transformer != null && transformFilter.test(entry.name)) {
+                    inFlight.acquire();
+                    byte[] compressed = readCompressed(in, entry);
+                    content = workers.submit(() -> {
+                        byte[] data = transformer.transform(entry.name, inflate(entry, compressed));
+                        return data != null ? Compressed.of(data) : null;
+                    });
+                }
+                queue.put(new Slot(entry, entry.name, content));
+            }
+            for (Map.Entry<String, byte[]> added : replacements.entrySet()) {
+                if (!names.contains(added.getKey())) {
+                    byte[] data = added.getValue();
+                    inFlight.acquire();
+                    queue.put(new Slot(null, added.getKey(), workers.submit(() -> Compressed.of(data))));
+                }
+            }
+            queue.put(Slot.END);
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            // Запись прервана - дальше читать незачем
+        } catch (Exception e) {
+            // Ошибка чтения доходит до потока записи как упавшая задача
+            try {
+                queue.put(new Slot(null, null, CompletableFuture.failedFuture(e)));
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    private static Compressed await(Future<Compressed> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    private static CentralDirectory readCentralDirectory(FileChannel in) throws IOException {
+        long fileSize = in.size();
+        if (fileSize < END_OF_CENTRAL_SIZE) {
+            throw new ZipException("Не ZIP файл: слишком короткий");
+        }
+
+        // Конец центрального каталога - последние 22 байта плюс комментарий архива (до 64 КБ)
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_SIZE + 0xFFFF);
+        ByteBuffer tail = read(in, fileSize - tailSize, tailSize);
+        int end = -1;
+        for (int i = tailSize - END_OF_CENTRAL_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL
+                    && i + END_OF_CENTRAL_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailSize) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("Не найден центральный каталог ZIP");
+        }
+        if (end >= 20 && tail.getInt(end - 20) == ZIP64_LOCATOR) {
+            throw new UnsupportedZipException("ZIP64");
+        }
+
+        int entryCount = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        int commentLength = tail.getShort(end + 20) & 0xFFFF;
+        byte[] comment = new byte[commentLength];
+        tail.get(end + END_OF_CENTRAL_SIZE, comment);
+        if (tail.getShort(end + 4) != 0 || tail.getShort(end + 6) != 0) {
+            throw new UnsupportedZipException("многотомный архив");
+        }
+        if (directoryOffset + directorySize > fileSize) {
+            throw new ZipException("Поврежден центральный каталог ZIP");
+        }
+
+        ByteBuffer directory = read(in, directoryOffset, (int) directorySize);
+        List<RawEntry> entries = new ArrayList<>(entryCount);
+        int position = 0;
+        while (position + CENTRAL_HEADER_SIZE <= directorySize && directory.getInt(position) == CENTRAL_HEADER) {
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int entryCommentLength = directory.getShort(position + 32) & 0xFFFF;
+            int recordLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + entryCommentLength;
+            if (position + recordLength > directorySize) {
+                throw new ZipException("Поврежден центральный каталог ZIP");
+            }
+            byte[] record = new byte[recordLength];
+            directory.get(position, record);
+            entries.add(new RawEntry(record));
+            position += recordLength;
+        }
+        if (entries.size() != entryCount) {
+            throw new UnsupportedZipException("число записей не совпадает с каталогом (" + entries.size() + " из " + entryCount + ")");
+        }
+        return new CentralDirectory(entries, comment);
+    }
+
+    // Сжатые байты записи читает поток чтения, распаковывает - поток пула
+    private static byte[] readCompressed(FileChannel in, RawEntry entry) throws IOException {
+        return read(in, entry.dataOffset(in), (int) entry.compressedSize).array();
+    }
+
+    // Распакованное содержимое записи (только для тех, что идут в преобразование)
+    private static byte[] inflate(RawEntry entry, byte[] compressed) throws IOException {
+        byte[] data = new byte[(int) entry.size];
+        if (entry.method == ZipEntry.STORED) {
+            if (compressed.length != data.length) {
+                throw new ZipException("Повреждена запись " + entry.name);
+            }
+            System.arraycopy(compressed, 0, data, 0, data.length);
+        } else if (entry.method == ZipEntry.DEFLATED) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int total = 0;
+                while (total < data.length) {
+                    int count = inflater.inflate(data, total, data.length - total);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    total += count;
+                }
+                if (total != data.length) {
+                    throw new ZipException("Повреждена запись " + entry.name);
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Повреждена запись " + entry.name + ": " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new UnsupportedZipException("метод сжатия " + entry.method + " у " + entry.name);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != entry.crc) {
+            throw new ZipException("Неверная CRC записи " + entry.name);
+        }
+        return data;
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Неожиданный конец ZIP файла");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // ========== МЕДЛЕННЫЙ ПУТЬ: ПОЛНАЯ ПЕРЕПАКОВКА ==========
+
+    private Result writeRecompressed(Path target) throws Exception {
+        Result result = new Result(false);
+        Set<String> written = new HashSet<>();
+        try (ZipFile zip = new ZipFile(source);
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER))) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                byte[] data;
+                try (InputStream input = zip.getInputStream(entry)) {
+                    data = input.readAllBytes();
+                }
+                byte[] replacement = replacements.get(entry.getName());
+                if (replacement == null && transformer != null && transformFilter.test(entry.getName())) {
+                    replacement = transformer.transform(entry.getName(), data);
+                }
+                if (replacement != null) {
+                    data = replacement;
+                    written.add(entry.getName());
+                    result.rewrittenCount++;
+                } else {
+                    result.copiedCount++;
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                out.write(data);
+                out.closeEntry();
+            }
+            for (Map.Entry<String, byte[]> added : replacements.entrySet()) {
+                if (!written.contains(added.getKey())) {
+                    out.putNextEntry(new ZipEntry(added.getKey()));
+                    out.write(added.getValue());
+                    out.closeEntry();
+                    result.addedCount++;
+                }
+            }
+            out.finish();
+            out.flush();
+            channel.force(true);
+        }
+        return result;
+    }
+
+    // ========== ЗАПИСЬ ==========
+
+    // Запись в канал через один большой буфер; канал закрывает вызывающий
+    private static class ZipOutput {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER);
+        private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+        private final ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final int dosTime;
+        private final int dosDate;
+        private long position;
+        private int entryCount;
+
+        ZipOutput(FileChannel out) {
+            this.out = out;
+            LocalDateTime now = LocalDateTime.now();
+            this.dosTime = now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() >> 1;
+            this.dosDate = Math.max(0, now.getYear() - 1980) << 9 | now.getMonthValue() << 5 | now.getDayOfMonth();
+        }
+
+        // Локальный заголовок собирается заново (без дескриптора данных), сжатые байты переносятся как есть
+        void copyRaw(FileChannel in, RawEntry entry) throws IOException {
+            ByteBuffer local = read(in, entry.localOffset, LOCAL_HEADER_SIZE);
+            if (local.getInt(0) != LOCAL_HEADER) {
+                throw new ZipException("Поврежден локальный заголовок " + entry.name);
+            }
+            int localNameLength = local.getShort(26) & 0xFFFF;
+            int localExtraLength = local.getShort(28) & 0xFFFF;
+            long extraOffset = entry.localOffset + LOCAL_HEADER_SIZE + localNameLength;
+            byte[] localExtra = new byte[localExtraLength];
+            read(in, extraOffset, localExtraLength).get(localExtra);
+
+            int flags = entry.flags & ~FLAG_DATA_DESCRIPTOR;
+            long offset = position;
+            writeLocalHeader(entry.versionNeeded, flags, entry.method, entry.time, entry.date,
+                    entry.crc, entry.compressedSize, entry.size, entry.nameBytes, localExtra);
+
+            // Сжатые байты читаются из исходного JAR прямо в буфер записи
+            long from = extraOffset + localExtraLength;
+            long remaining = entry.compressedSize;
+            while (remaining > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int limit = buffer.limit();
+                buffer.limit((int) Math.min(limit, buffer.position() + remaining));
+                int count = in.read(buffer, from);
+                buffer.limit(limit);
+                if (count < 0) {
+                    throw new EOFException("Неожиданный конец записи " + entry.name);
+                }
+                from += count;
+                remaining -= count;
+            }
+            position += entry.compressedSize;
+
+            // Центральная запись - исходная, меняются только флаги и смещение
+            ByteBuffer record = ByteBuffer.wrap(entry.centralRecord.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            record.putShort(8, (short) flags);
+            record.putInt(42, (int) offset);
+            central.write(record.array(), 0, record.capacity());
+            entryCount++;
+        }
+
+        // original - заменяемая запись исходного JAR: ее имя, время, атрибуты, extra и комментарий
+        // сохраняются, меняются только данные. null - новая запись, время - текущее
+        void writeEntry(String name, Compressed entry, RawEntry original) throws IOException {
+            byte[] nameBytes;
+            int flags;
+            int madeBy = 20;
+            int time = dosTime;
+            int date = dosDate;
+            int internalAttributes = 0;
+            int externalAttributes = 0;
+            byte[] extra = new byte[0];
+            byte[] comment = new byte[0];
+            if (original != null) {
+                nameBytes = original.nameBytes;
+                flags = original.flags & FLAG_UTF8;
+                madeBy = original.versionMadeBy;
+                time = original.time;
+                date = original.date;
+                internalAttributes = original.internalAttributes;
+                externalAttributes = original.externalAttributes;
+                extra = original.extra;
+                comment = original.comment;
+            } else {
+                nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                flags = nameBytes.length != name.length() ? FLAG_UTF8 : 0;
+            }
+            int versionNeeded = entry.method == ZipEntry.DEFLATED ? 20 : 10;
+            long offset = position;
+            writeLocalHeader(versionNeeded, flags, entry.method, time, date,
+                    entry.crc, entry.data.length, entry.size, nameBytes, extra);
+            write(entry.data, 0, entry.data.length);
+            position += entry.data.length;
+
+            header.clear();
+            header.putInt(CENTRAL_HEADER).putShort((short) madeBy).putShort((short) versionNeeded)
+                    .putShort((short) flags).putShort((short) entry.method)
+                    .putShort((short) time).putShort((short) date)
+                    .putInt(entry.crc).putInt(entry.data.length).putInt(entry.size)
+                    .putShort((short) nameBytes.length).putShort((short) extra.length)
+                    .putShort((short) comment.length).putShort((short) 0)
+                    .putShort((short) internalAttributes).putInt(externalAttributes).putInt((int) offset);
+            central.write(header.array(), 0, CENTRAL_HEADER_SIZE);
+            central.write(nameBytes);
+            central.write(extra);
+            central.write(comment);
+            entryCount++;
+        }
+
+        private void writeLocalHeader(int versionNeeded, int flags, int method, int time, int date, int crc,
+                                      long compressedSize, long size, byte[] nameBytes, byte[] extra) throws IOException {
+            if (position > 0xFFFFFFFFL - compressedSize) {
+                throw new UnsupportedZipException("результат больше 4 ГБ");
+            }
+            header.clear();
+            header.putInt(LOCAL_HEADER).putShort((short) versionNeeded).putShort((short) flags)
+                    .putShort((short) method).putShort((short) time).putShort((short) date)
+                    .putInt(crc).putInt((int) compressedSize).putInt((int) size)
+                    .putShort((short) nameBytes.length).putShort((short) extra.length);
+            write(header.array(), 0, LOCAL_HEADER_SIZE);
+            write(nameBytes, 0, nameBytes.length);
+            write(extra, 0, extra.length);
+            position += LOCAL_HEADER_SIZE + nameBytes.length + extra.length;
+        }
+
+        void finish(byte[] comment) throws IOException {
+            if (entryCount > 0xFFFF) {
+                throw new UnsupportedZipException("больше 65535 записей");
+            }
+            long directoryOffset = position;
+            byte[] directory = central.toByteArray();
+            write(directory, 0, directory.length);
+            header.clear();
+            header.putInt(END_OF_CENTRAL).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) entryCount).putShort((short) entryCount)
+                    .putInt(central.size()).putInt((int) directoryOffset).putShort((short) comment.length);
+            write(header.array(), 0, END_OF_CENTRAL_SIZE);
+            write(comment, 0, comment.length);
+            flush();
+        }
+
+        private void write(byte[] data, int offset, int length) throws IOException {
+            if (length > buffer.remaining()) {
+                flush();
+                if (length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(data, offset, length));
+                    return;
+                }
+            }
+            buffer.put(data, offset, length);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        }
+    }
+
+    // ========== МОДЕЛЬ ==========
+
+    // Новое содержимое записи, уже сжатое (сжатие - в потоке преобразования, не в потоке записи)
+    private static class Compressed {
+        final byte[] data;
+        final int method;
+        final int crc;
+        final int size;
+
+        private Compressed(byte[] data, int method, int crc, int size) {
+            this.data = data;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        static Compressed of(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (data.length > 0) {
+                byte[] deflated = deflate(data);
+                if (deflated.length < data.length) {
+                    return new Compressed(deflated, ZipEntry.DEFLATED, (int) crc.getValue(), data.length);
+                }
+            }
+            return new Compressed(data, ZipEntry.STORED, (int) crc.getValue(), data.length);
+        }
+
+        private static byte[] deflate(byte[] data) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    result.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return result.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    // Элемент очереди конвейера: запись JAR и ее новое содержимое (null - копировать как есть)
+    private static class Slot {
+        static final Slot END = new Slot(null, null, null);
+
+        final RawEntry entry;
+        final String name;
+        final Future<Compressed> content;
+
+        Slot(RawEntry entry, String name, Future<Compressed> content) {
+            this.entry = entry;
+            this.name = name;
+            this.content = content;
+        }
+    }
+
+    // Запись центрального каталога исходного JAR
+    private static class RawEntry {
+        final byte[] centralRecord;
+        final byte[] nameBytes;
+        final byte[] extra;
+        final byte[] comment;
+        final String name;
+        final int versionMadeBy;
+        final int versionNeeded;
+        final int flags;
+        final int method;
+        final int time;
+        final int date;
+        final int crc;
+        final long compressedSize;
+        final long size;
+        final long localOffset;
+        final int internalAttributes;
+        final int externalAttributes;
+
+        RawEntry(byte[] record) throws ZipException {
+            ByteBuffer buffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+            this.centralRecord = record;
+            this.versionMadeBy = buffer.getShort(4) & 0xFFFF;
+            this.versionNeeded = buffer.getShort(6) & 0xFFFF;
+            this.flags = buffer.getShort(8) & 0xFFFF;
+            this.method = buffer.getShort(10) & 0xFFFF;
+            this.time = buffer.getShort(12) & 0xFFFF;
+            this.date = buffer.getShort(14) & 0xFFFF;
+            this.crc = buffer.getInt(16);
+            this.compressedSize = buffer.getInt(20) & 0xFFFFFFFFL;
+            this.size = buffer.getInt(24) & 0xFFFFFFFFL;
+            this.internalAttributes = buffer.getShort(36) & 0xFFFF;
+            this.externalAttributes = buffer.getInt(38);
+            this.localOffset = buffer.getInt(42) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(28) & 0xFFFF;
+            int extraLength = buffer.getShort(30) & 0xFFFF;
+            int commentLength = buffer.getShort(32) & 0xFFFF;
+            int extraStart = CENTRAL_HEADER_SIZE + nameLength;
+            this.nameBytes = Arrays.copyOfRange(record, CENTRAL_HEADER_SIZE, extraStart);
+            this.extra = Arrays.copyOfRange(record, extraStart, extraStart + extraLength);
+            this.comment = Arrays.copyOfRange(record, extraStart + extraLength, extraStart + extraLength + commentLength);
+            this.name = new String(nameBytes, StandardCharsets.UTF_8);
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new UnsupportedZipException("ZIP64 запись " + name);
+            }
+        }
+
+        long dataOffset(FileChannel in) throws IOException {
+            ByteBuffer local = read(in, localOffset, LOCAL_HEADER_SIZE);
+            if (local.getInt(0) != LOCAL_HEADER) {
+                throw new ZipException("Поврежден локальный заголовок " + name);
+            }
+            return localOffset + LOCAL_HEADER_SIZE + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+        }
+    }
+
+    private static class CentralDirectory {
+        final List<RawEntry> entries;
+        final byte[] comment;
+
+        CentralDirectory(List<RawEntry> entries, byte[] comment) {
+            this.entries = entries;
+            this.comment = comment;
+        }
+    }
+
+    // Корректный, но неподдерживаемый быстрым путем архив
+    private static class UnsupportedZipException extends ZipException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedZipException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Result {
+        // false - JAR пришлось перепаковать целиком
+        public final boolean passthrough;
+        public int copiedCount;
+        public long copiedBytes;
+        public int rewrittenCount;
+        public int addedCount;
+        public long elapsedMs;
+
+        Result(boolean passthrough) {
+            this.passthrough = passthrough;
+        }
+
+        @Override
+        public String toString() {
+            return (passthrough ? "скопировано без перепаковки " + copiedCount + " (" + copiedBytes / 1024 + " КБ)"
+                    : "перепаковано " + copiedCount) +
+                    ", заменено " + rewrittenCount + ", добавлено " + addedCount + ", " + elapsedMs + " мс";
+        }
+    }
+}
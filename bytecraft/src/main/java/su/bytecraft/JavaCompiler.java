@@ -22,6 +22,69 @@ public class JavaCompiler {
     private static File tempExtractDir = null;
 
     public byte[] compileJavaFile(File javaFile, List<File> classpath, File originalJar) throws Exception {
+        // Создаем временную директорию
+        Path tempDir = Files.createTempDirectory("compile_");
+
+        try {
+            runCompiler(Collections.singletonList(javaFile), classpath, originalJar, tempDir);
+
+            // Ищем скомпилированный .class файл
+            String className = javaFile.getName().replace(".java", "");
+            Path classFile = findClassFile(tempDir, className);
+
+            if (classFile == null) {
+                throw new CompilationException("Скомпилированный .class файл не найден в: " + tempDir);
+            }
+
+            System.out.println("✅ Компиляция успешна!");
+            return Files.readAllBytes(classFile);
+
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    // Несколько классов одним вызовом javac (могут ссылаться друг на друга).
+    // Ключ sources - полное имя класса ("a.b.C"), результат - все .class, включая вложенные ("a/b/C$1.class")
+    public Map<String, byte[]> compileJavaSources(Map<String, String> sources, List<File> classpath,
+                                                  File originalJar) throws Exception {
+        Path tempDir = Files.createTempDirectory("compile_set_");
+        try {
+            Path sourceDir = Files.createDirectories(tempDir.resolve("src"));
+            Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+            List<File> javaFiles = new ArrayList<>();
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                Path javaFile = sourceDir.resolve(source.getKey().replace('.', File.separatorChar) + ".java");
+                Files.createDirectories(javaFile.getParent());
+                Files.writeString(javaFile, source.getValue());
+                javaFiles.add(javaFile.toFile());
+            }
+            System.out.println("🔧 Компиляция " + sources.size() + " классов: " + String.join(", ", sources.keySet()));
+
+            runCompiler(javaFiles, classpath, originalJar, outputDir);
+
+            Map<String, byte[]> classes = new TreeMap<>();
+            try (var stream = Files.walk(outputDir)) {
+                for (Path classFile : (Iterable<Path>) stream.filter(path -> path.toString().endsWith(".class"))::iterator) {
+                    String entryName = outputDir.relativize(classFile).toString().replace(File.separatorChar, '/');
+                    classes.put(entryName, Files.readAllBytes(classFile));
+                }
+            }
+            for (String className : sources.keySet()) {
+                if (!classes.containsKey(className.replace('.', '/') + ".class")) {
+                    throw new CompilationException("Класс " + className + " не найден среди скомпилированных " +
+                            "(имя класса или пакет в исходнике не совпадает?)");
+                }
+            }
+
+            System.out.println("✅ Компиляция успешна: " + classes.size() + " .class файлов");
+            return classes;
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    private void runCompiler(List<File> javaFiles, List<File> classpath, File originalJar, Path outputDir) throws Exception {
         // Определяем версию MC и информацию о плагине
         if (originalJar != null && detectedMcVersion == null) {
             pluginInfo = PluginVersionDetector.getPluginInfo(originalJar);
@@ -39,130 +102,116 @@ public class JavaCompiler {
             System.out.println("⚠️  Версия не определена, используем по умолчанию: " + detectedMcVersion);
         }
 
-        // Создаем временную директорию
-        Path tempDir = Files.createTempDirectory("compile_");
-
-        try {
-            javax.tools.JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if (compiler == null) {
-                throw new CompilationException(
-                        "Java компилятор не найден!\n" +
-                                "Установите JDK (не JRE):\n" +
-                                "1. Скачайте с https://adoptium.net/\n" +
-                                "2. Установите JDK\n" +
-                                "3. Убедитесь что JAVA_HOME указывает на JDK\n" +
-                                "Текущая Java: " + System.getProperty("java.version") + "\n" +
-                                "Путь: " + System.getProperty("java.home")
-                );
-            }
-
-            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-            StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
-
-            // Подготавливаем опции компиляции
-            List<String> options = new ArrayList<>();
-            options.add("-g"); // Включаем debug информацию
-            options.add("-parameters"); // Сохраняем имена параметров
-
-            // Для старых версий Minecraft может потребоваться source/target
-            if (detectedMcVersion.compareTo(new VersionUtils.McVersion("1.17")) < 0) {
-                // Для версий до 1.17 используем Java 8 compatibility
-                options.add("-source");
-                options.add("8");
-                options.add("-target");
-                options.add("8");
-                System.out.println("⚙️  Установлены флаги для Java 8 совместимости");
-            }
-
-            // Создаем полный classpath
-            List<File> fullClasspath = new ArrayList<>();
-
-            // 1. Добавляем стандартные библиотеки Java
-            addJavaLibraries(fullClasspath);
-
-            // 2. Добавляем пользовательский classpath
-            if (classpath != null) {
-                fullClasspath.addAll(classpath);
-            }
+        javax.tools.JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new CompilationException(
+                    "Java компилятор не найден!\n" +
+                            "Установите JDK (не JRE):\n" +
+                            "1. Скачайте с https://adoptium.net/\n" +
+                            "2. Установите JDK\n" +
+                            "3. Убедитесь что JAVA_HOME указывает на JDK\n" +
+                            "Текущая Java: " + System.getProperty("java.version") + "\n" +
+                            "Путь: " + System.getProperty("java.home")
+            );
+        }
 
-            // 3. Добавляем Bukkit/Spigot API (из ресурсов JAR)
-            List<File> apiDeps = findBukkitDependenciesFromResources(detectedMcVersion);
-            fullClasspath.addAll(apiDeps);
-
-            // 4. Добавляем Maven зависимости
-            fullClasspath.addAll(getMavenDependencies());
-
-            // Строим classpath строку
-            if (!fullClasspath.isEmpty()) {
-                String cp = fullClasspath.stream()
-                        .distinct()
-                        .map(File::getAbsolutePath)
-                        .collect(Collectors.joining(File.pathSeparator));
-                options.add("-cp");
-                options.add(cp);
-
-                System.out.println("📚 Classpath содержит " + fullClasspath.size() + " файлов:");
-                System.out.println("📁 Classpath (первые 500 символов): " +
-                        cp.substring(0, Math.min(cp.length(), 500)) +
-                        (cp.length() > 500 ? "..." : ""));
-            }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+
+        // Подготавливаем опции компиляции
+        List<String> options = new ArrayList<>();
+        options.add("-g"); // Включаем debug информацию
+        options.add("-parameters"); // Сохраняем имена параметров
+
+        // Для старых версий Minecraft может потребоваться source/target
+        if (detectedMcVersion.compareTo(new VersionUtils.McVersion("1.17")) < 0) {
+            // Для версий до 1.17 используем Java 8 compatibility
+            options.add("-source");
+            options.add("8");
+            options.add("-target");
+            options.add("8");
+            System.out.println("⚙️  Установлены флаги для Java 8 совместимости");
+        }
 
-            // Целевая директория для .class файлов
-            options.add("-d");
-            options.add(tempDir.toString());
+        // Создаем полный classpath
+        List<File> fullClasspath = new ArrayList<>();
 
-            // Файлы для компиляции
-            Iterable<? extends JavaFileObject> compilationUnits =
-                    fileManager.getJavaFileObjectsFromFiles(Collections.singletonList(javaFile));
+        // 1. Добавляем стандартные библиотеки Java
+        addJavaLibraries(fullClasspath);
 
-            // Запускаем компиляцию
-            javax.tools.JavaCompiler.CompilationTask task = compiler.getTask(
-                    null, fileManager, diagnostics, options, null, compilationUnits
-            );
+        // 2. Добавляем пользовательский classpath
+        if (classpath != null) {
+            fullClasspath.addAll(classpath);
+        }
 
-            System.out.println("⚡ Запуск компиляции...");
-            boolean success = task.call();
+        // 3. Добавляем Bukkit/Spigot API (из ресурсов JAR)
+        List<File> apiDeps = findBukkitDependenciesFromResources(detectedMcVersion);
+        fullClasspath.addAll(apiDeps);
+
+        // 4. Добавляем Maven зависимости
+        fullClasspath.addAll(getMavenDependencies());
+
+        // Строим classpath строку
+        if (!fullClasspath.isEmpty()) {
+            String cp = fullClasspath.stream()
+                    .distinct()
+                    .map(File::getAbsolutePath)
+                    .collect(Collectors.joining(File.pathSeparator));
+            options.add("-cp");
+            options.add(cp);
+
+            System.out.println("📚 Classpath содержит " + fullClasspath.size() + " файлов:");
+            System.out.println("📁 Classpath (первые 500 символов): " +
+                    cp.substring(0, Math.min(cp.length(), 500)) +
+                    (cp.length() > 500 ? "..." : ""));
+        }
 
-            // Выводим диагностику
-            if (!success || !diagnostics.getDiagnostics().isEmpty()) {
-                System.out.println("⚠️  Диагностика компиляции:");
-                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-                    System.out.println("   " + diagnostic.getKind() + ": " +
-                            diagnostic.getMessage(Locale.getDefault()) +
-                            " at line " + diagnostic.getLineNumber());
-                }
+        // Целевая директория для .class файлов
+        options.add("-d");
+        options.add(outputDir.toString());
+
+        // Файлы для компиляции
+        Iterable<? extends JavaFileObject> compilationUnits =
+                fileManager.getJavaFileObjectsFromFiles(javaFiles);
+
+        // Запускаем компиляцию
+        javax.tools.JavaCompiler.CompilationTask task = compiler.getTask(
+                null, fileManager, diagnostics, options, null, compilationUnits
+        );
+
+        System.out.println("⚡ Запуск компиляции...");
+        boolean success = task.call();
+
+        // Выводим диагностику
+        if (!success || !diagnostics.getDiagnostics().isEmpty()) {
+            System.out.println("⚠️  Диагностика компиляции:");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                System.out.println("   " + diagnostic.getKind() + ": " +
+                        diagnostic.getMessage(Locale.getDefault()) +
+                        " at line " + diagnostic.getLineNumber());
             }
+        }
 
-            fileManager.close();
+        fileManager.close();
 
-            if (!success) {
-                StringBuilder error = new StringBuilder("Ошибка компиляции:\n");
-                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-                    error.append("? Строка ").append(diagnostic.getLineNumber())
-                            .append(": ").append(diagnostic.getMessage(Locale.getDefault()))
-                            .append("\n");
+        if (!success) {
+            StringBuilder error = new StringBuilder("Ошибка компиляции:\n");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                error.append("? ");
+                // В наборе из нескольких классов указываем, в каком файле ошибка
+                if (javaFiles.size() > 1 && diagnostic.getSource() != null) {
+                    error.append(new File(diagnostic.getSource().getName()).getName()).append(", ");
                 }
-                throw new CompilationException(error.toString());
-            }
-
-            // Ищем скомпилированный .class файл
-            String className = javaFile.getName().replace(".java", "");
-            Path classFile = findClassFile(tempDir, className);
-
-            if (classFile == null) {
-                throw new CompilationException("Скомпилированный .class файл не найден в: " + tempDir);
+                error.append("Строка ").append(diagnostic.getLineNumber())
+                        .append(": ").append(diagnostic.getMessage(Locale.getDefault()))
+                        .append("\n");
             }
-
-            System.out.println("✅ Компиляция успешна!");
-            return Files.readAllBytes(classFile);
-
-        } finally {
-            deleteDirectory(tempDir);
+            throw new CompilationException(error.toString());
         }
     }
 
     // Новый метод: поиск API файлов в ресурсах JAR
-    private List<File> findBukkitDependenciesFromResources(VersionUtils.McVersion targetVersion) {
+    List<File> findBukkitDependenciesFromResources(VersionUtils.McVersion targetVersion) {
         List<File> deps = new ArrayList<>();
 
         System.out.println("🔍 Поиск API в ресурсах JAR для версии " + targetVersion + "...");
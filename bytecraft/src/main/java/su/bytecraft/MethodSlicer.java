@@ -0,0 +1,151 @@
+package su.bytecraft;
+
+import org.objectweb.asm.*;
+
+import java.util.*;
+
+// Вырезка одного метода из класса для точечной декомпиляции.
+// В урезанном классе остаются заголовок, поля, выбранный метод и синтетические методы,
+// которые он вызывает (тела лямбд, access$-мосты) - без них CFR не соберет лямбды обратно.
+public class MethodSlicer {
+
+    public static List<MethodInfo> listMethods(byte[] classBytes) {
+        List<MethodInfo> methods = new ArrayList<>();
+
+        new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                MethodInfo info = new MethodInfo(access, name, descriptor);
+                methods.add(info);
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        if (info.firstLine == 0 || line < info.firstLine) {
+                            info.firstLine = line;
+                        }
+                    }
+
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        info.hasCode = true;
+                    }
+                };
+            }
+        }, ClassReader.SKIP_FRAMES);
+
+        return methods;
+    }
+
+    public static byte[] slice(byte[] classBytes, String name, String descriptor) {
+        ClassReader reader = new ClassReader(classBytes);
+        Set<String> keep = collectKept(reader, name + descriptor);
+        if (!keep.contains(name + descriptor)) {
+            throw new IllegalArgumentException("Метод не найден: " + name + descriptor);
+        }
+
+        // Writer с reader: оставленные методы копируются как есть, фреймы пересчитывать не нужно
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String methodName, String methodDescriptor,
+                                             String signature, String[] exceptions) {
+                if (!keep.contains(methodName + methodDescriptor)) {
+                    return null;
+                }
+                return super.visitMethod(access, methodName, methodDescriptor, signature, exceptions);
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    // Выбранный метод + транзитивно все синтетические методы этого же класса, на которые он ссылается
+    private static Set<String> collectKept(ClassReader reader, String target) {
+        String owner = reader.getClassName();
+        Map<String, Integer> access = new HashMap<>();
+        Map<String, Set<String>> calls = new HashMap<>();
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int methodAccess, String name, String descriptor,
+                                             String signature, String[] exceptions) {
+                String key = name + descriptor;
+                access.put(key, methodAccess);
+                Set<String> targets = new HashSet<>();
+                calls.put(key, targets);
+
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String callOwner, String callName,
+                                                String callDescriptor, boolean isInterface) {
+                        if (callOwner.equals(owner)) {
+                            targets.add(callName + callDescriptor);
+                        }
+                    }
+
+                    @Override
+                    public void visitInvokeDynamicInsn(String indyName, String indyDescriptor,
+                                                       Handle bootstrap, Object... arguments) {
+                        for (Object argument : arguments) {
+                            if (argument instanceof Handle && ((Handle) argument).getOwner().equals(owner)) {
+                                Handle handle = (Handle) argument;
+                                targets.add(handle.getName() + handle.getDesc());
+                            }
+                        }
+                    }
+                };
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        Set<String> keep = new HashSet<>();
+        if (!access.containsKey(target)) {
+            return keep;
+        }
+
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(target);
+        keep.add(target);
+        while (!queue.isEmpty()) {
+            for (String callee : calls.getOrDefault(queue.poll(), Collections.emptySet())) {
+                Integer calleeAccess = access.get(callee);
+                if (calleeAccess != null && (calleeAccess & Opcodes.ACC_SYNTHETIC) != 0 && keep.add(callee)) {
+                    queue.add(callee);
+                }
+            }
+        }
+        return keep;
+    }
+
+    public static class MethodInfo {
+        public final int access;
+        public final String name;
+        public final String descriptor;
+        private int firstLine;
+        private boolean hasCode;
+
+        MethodInfo(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        public boolean isSynthetic() {
+            return (access & Opcodes.ACC_SYNTHETIC) != 0;
+        }
+
+        public boolean hasCode() {
+            return hasCode;
+        }
+
+        // 0 - в классе нет отладочной информации о строках
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        @Override
+        public String toString() {
+            return ClassOutline.describeMethod(access, name, descriptor) +
+                    (firstLine > 0 ? "  // строка " + firstLine : "");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package su.bytecraft;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Набор правок одного плагина: исходники классов и ресурсы. Классы компилируются вместе, одним вызовом
+// javac (могут ссылаться на новые методы друг друга), а JAR пишется за один проход (JarPatcher.applyPatchSet).
+// Если не удался любой шаг, исходный JAR и прежний _PATCHED остаются как были.
+public class PatchSet {
+
+    private final File originalJar;
+    // Полное имя класса ("a.b.C") -> исходник
+    private final Map<String, String> sources = new LinkedHashMap<>();
+    // Имя записи в JAR ("plugin.yml") -> содержимое
+    private final Map<String, byte[]> resources = new LinkedHashMap<>();
+
+    public PatchSet(File originalJar) {
+        this.originalJar = originalJar;
+    }
+
+    public File getOriginalJar() {
+        return originalJar;
+    }
+
+    // Повторное добавление того же класса заменяет прежнюю правку
+    public PatchSet addClass(String className, String javaCode) {
+        if (javaCode == null || javaCode.isBlank()) {
+            throw new IllegalArgumentException("Пустой исходник класса " + className);
+        }
+        sources.put(className, javaCode);
+        return this;
+    }
+
+    public PatchSet addResource(String entryName, byte[] data) {
+        if (entryName.endsWith(".class")) {
+            throw new IllegalArgumentException("Классы добавляются исходником (addClass): " + entryName);
+        }
+        resources.put(entryName, data);
+        return this;
+    }
+
+    public PatchSet removeClass(String className) {
+        sources.remove(className);
+        return this;
+    }
+
+    public Map<String, String> getSources() {
+        return Collections.unmodifiableMap(sources);
+    }
+
+    public Map<String, byte[]> getResources() {
+        return Collections.unmodifiableMap(resources);
+    }
+
+    public boolean isEmpty() {
+        return sources.isEmpty() && resources.isEmpty();
+    }
+
+    public int size() {
+        return sources.size() + resources.size();
+    }
+
+    @Override
+    public String toString() {
+        return sources.size() + " классов, " + resources.size() + " ресурсов";
+    }
+}
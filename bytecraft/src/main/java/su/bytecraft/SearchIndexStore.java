@@ -0,0 +1,190 @@
+package su.bytecraft;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Индексы байткода на диске: по файлу на JAR, открываются через mmap и сразу готовы к поиску.
+// Имя файла = SHA-256(путь к JAR) + размер и дата JAR, поэтому новая версия индекса пишется рядом
+// со старой, а не поверх нее: на Windows отображенный файл нельзя ни заменить, ни удалить.
+public class SearchIndexStore {
+
+    // -Dbytecraft.searchIndex.dir=... (папка), -Dbytecraft.searchIndex.persist=false (только в памяти)
+    private static final long UNUSED_DAYS = 30;
+    private static final String SUFFIX = ".idx";
+
+    private static volatile SearchIndexStore defaultStore;
+
+    private final Path root;
+    private final boolean enabled;
+
+    public SearchIndexStore(Path root, boolean enabled) {
+        this.root = root;
+        this.enabled = enabled;
+    }
+
+    public static SearchIndexStore getDefault() {
+        if (defaultStore == null) {
+            synchronized (SearchIndexStore.class) {
+                if (defaultStore == null) {
+                    defaultStore = new SearchIndexStore(Paths.get(System.getProperty("bytecraft.searchIndex.dir",
+                            System.getProperty("user.home") + File.separator + ".bytecraft" + File.separator + "search-index")),
+                            Boolean.parseBoolean(System.getProperty("bytecraft.searchIndex.persist", "true")));
+                }
+            }
+        }
+        return defaultStore;
+    }
+
+    // Индекс этого JAR: точный по размеру и дате, иначе самый свежий из прежних (база для обновления)
+    public BytecodeSearchIndex load(File jarFile) {
+        if (!enabled) {
+            return null;
+        }
+        File jar = jarFile.getAbsoluteFile();
+        Path exact = root.resolve(fileName(jar));
+        List<Path> candidates = new ArrayList<>();
+        if (Files.isRegularFile(exact)) {
+            candidates.add(exact);
+        }
+        candidates.addAll(previousVersions(jar, exact));
+
+        for (Path candidate : candidates) {
+            try {
+                BytecodeSearchIndex index = BytecodeSearchIndex.fromBuffer(map(candidate));
+                if (index.getJarFile().equals(jar)) {
+                    // Отметка использования: давно не открывавшиеся индексы удаляются
+                    touch(candidate);
+                    return index;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("⚠️  Индекс " + candidate.getFileName() + " не прочитан: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Пишет индекс и возвращает его отображенную с диска копию (при ошибке записи - исходный индекс)
+    public BytecodeSearchIndex save(BytecodeSearchIndex index) {
+        if (!enabled) {
+            return index;
+        }
+        File jar = index.getJarFile();
+        Path file = root.resolve(fileName(jar));
+        Path temp = null;
+        try {
+            Files.createDirectories(root);
+            temp = Files.createTempFile(root, file.getFileName().toString().substring(0, 8) + "_", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = index.getBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+
+            BytecodeSearchIndex mapped = BytecodeSearchIndex.fromBuffer(map(file));
+            removeStale(jar, file);
+            return mapped;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("⚠️  Не удалось сохранить индекс " + jar.getName() + ": " + e.getMessage());
+            return index;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остается действительным и после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private List<Path> previousVersions(File jar, Path exact) {
+        List<Path> result = new ArrayList<>();
+        String prefix = pathHash(jar) + "_";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, prefix + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                if (!path.equals(exact)) {
+                    result.add(path);
+                }
+            }
+        } catch (IOException e) {
+            return result;
+        }
+        result.sort((a, b) -> Long.compare(lastModified(b), lastModified(a)));
+        return result;
+    }
+
+    // Прежние версии индекса этого JAR и индексы, не открывавшиеся больше месяца
+    private void removeStale(File jar, Path current) {
+        for (Path old : previousVersions(jar, current)) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException ignored) {
+                // Еще отображен (Windows) - удалим в следующий раз
+            }
+        }
+        long cutoff = System.currentTimeMillis() - UNUSED_DAYS * 24 * 60 * 60 * 1000L;
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(path -> lastModified(path) < cutoff)
+                    .filter(path -> path.toString().endsWith(SUFFIX) || path.toString().endsWith(".tmp"))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException ignored) {}
+                    });
+        } catch (IOException ignored) {}
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {}
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static String fileName(File jar) {
+        return pathHash(jar) + "_" + jar.length() + "_" + jar.lastModified() + SUFFIX;
+    }
+
+    private static String pathHash(File jar) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] digest = sha.digest(jar.getPath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
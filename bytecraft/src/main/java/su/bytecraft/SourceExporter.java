@@ -0,0 +1,234 @@
+package su.bytecraft;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Экспорт всего JAR в дерево исходников: декомпиляция на всех ядрах (fork/join),
+// внутренние классы попадают в файл своего внешнего класса
+public class SourceExporter {
+
+    private static final String REPORT_FILE = "_export_report.txt";
+
+    private final Decompiler decompiler;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    // Потоки, которые сейчас ждут CFR: отмена их прерывает, и CFR останавливается на точке отмены
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+
+    public SourceExporter(Decompiler decompiler) {
+        this.decompiler = decompiler;
+    }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total, String className);
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+        for (Thread thread : running) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public ExportReport export(File jarFile, File outputDir, ProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String> classes = decompiler.getClassesFromJar(jarFile);
+        List<String> topLevel = groupByOuterClass(classes);
+
+        System.out.println("📤 Экспорт " + jarFile.getName() + ": " + classes.size() +
+                " классов, " + topLevel.size() + " файлов -> " + outputDir.getAbsolutePath());
+        Files.createDirectories(outputDir.toPath());
+
+        ExportReport report = new ExportReport(outputDir, topLevel.size());
+        AtomicInteger done = new AtomicInteger();
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.invoke(new ExportTask(jarFile, outputDir, topLevel, 0, topLevel.size(),
+                    report, done, listener));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        report.cancelled = cancelled.get();
+        report.millis = System.currentTimeMillis() - startTime;
+        writeReport(report);
+
+        System.out.println("✅ Экспорт завершен: " + report.getExported() + " из " + report.total +
+                ", ошибок: " + report.failures.size() + ", время: " + report.millis + " мс" +
+                (report.cancelled ? " (отменен)" : ""));
+        return report;
+    }
+
+    // Оставляем только классы верхнего уровня: CFR сам подтягивает Outer$Inner при декомпиляции Outer.
+    // Внутренние классы без внешнего (обрезанные обфускатором) экспортируются отдельно.
+    static List<String> groupByOuterClass(List<String> classes) {
+        Set<String> all = new HashSet<>(classes);
+        List<String> result = new ArrayList<>();
+
+        for (String className : classes) {
+            if (className.endsWith("module-info.class") || className.startsWith("META-INF/")) {
+                continue;
+            }
+
+            String simpleName = className.substring(className.lastIndexOf('/') + 1);
+            int dollar = simpleName.indexOf('$');
+            if (dollar > 0) {
+                String outer = className.substring(0, className.lastIndexOf('/') + 1) +
+                        simpleName.substring(0, dollar) + ".class";
+                if (all.contains(outer)) {
+                    continue;
+                }
+            }
+            result.add(className);
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+
+    private void exportClass(File jarFile, File outputDir, String className, ExportReport report) {
+        try {
+            // Имя записи берется из JAR как есть: "../x.class" или абсолютный путь не должны выйти за папку экспорта
+            Path root = outputDir.toPath().toAbsolutePath().normalize();
+            String sourceName = className.substring(0, className.length() - ".class".length()) + ".java";
+            Path target = root.resolve(sourceName).normalize();
+            if (!target.startsWith(root) || target.equals(root)) {
+                report.failures.put(className, "Пропущен: путь выходит за папку экспорта");
+                return;
+            }
+
+            // Лимит времени на класс и фоновые потоки CFR; в кэши экспорт не пишет, чтобы не вытеснить
+            // классы, открытые пользователем
+            String code;
+            running.add(Thread.currentThread());
+            try {
+                if (cancelled.get()) {
+                    return;
+                }
+                code = decompiler.decompileInBackground(jarFile, className, Decompiler.DEFAULT_TIMEOUT_MS);
+            } finally {
+                running.remove(Thread.currentThread());
+            }
+            Files.createDirectories(target.getParent());
+            Files.write(target, code.getBytes(StandardCharsets.UTF_8));
+
+            // CFR не падает целиком, а оставляет комментарий в методе, который не осилил
+            if (code.contains("Exception decompiling")) {
+                report.partial.add(className);
+            }
+            report.exported.incrementAndGet();
+        } catch (InterruptedException e) {
+            // Экспорт отменен посреди класса
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            report.failures.put(className, "Не уложился в " + Decompiler.DEFAULT_TIMEOUT_MS + " мс");
+        } catch (Exception e) {
+            report.failures.put(className, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void writeReport(ExportReport report) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ByteCraft - отчет об экспорте\n");
+        sb.append("Файлов: ").append(report.getExported()).append(" из ").append(report.total).append("\n");
+        sb.append("Время: ").append(report.millis).append(" мс\n");
+        if (report.cancelled) {
+            sb.append("Экспорт был отменен\n");
+        }
+
+        if (!report.failures.isEmpty()) {
+            sb.append("\nОшибки декомпиляции (").append(report.failures.size()).append("):\n");
+            new TreeMap<>(report.failures).forEach((cls, error) ->
+                    sb.append("  ").append(cls).append(": ").append(error).append("\n"));
+        }
+
+        if (!report.partial.isEmpty()) {
+            sb.append("\nЧастично декомпилированы (").append(report.partial.size()).append("):\n");
+            new TreeSet<>(report.partial).forEach(cls -> sb.append("  ").append(cls).append("\n"));
+        }
+
+        try {
+            Files.write(report.outputDir.toPath().resolve(REPORT_FILE), sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("⚠️  Не удалось записать отчет экспорта: " + e.getMessage());
+        }
+    }
+
+    // Делим список пополам, пока не останется один класс - простаивающие потоки крадут половинки
+    private class ExportTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File jarFile;
+        private final File outputDir;
+        private final List<String> classes;
+        private final int from;
+        private final int to;
+        private final ExportReport report;
+        private final AtomicInteger done;
+        private final ProgressListener listener;
+
+        ExportTask(File jarFile, File outputDir, List<String> classes, int from, int to,
+                   ExportReport report, AtomicInteger done, ProgressListener listener) {
+            this.jarFile = jarFile;
+            this.outputDir = outputDir;
+            this.classes = classes;
+            this.from = from;
+            this.to = to;
+            this.report = report;
+            this.done = done;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get() || from >= to) {
+                return;
+            }
+
+            if (to - from == 1) {
+                String className = classes.get(from);
+                exportClass(jarFile, outputDir, className, report);
+                int finished = done.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(finished, classes.size(), className);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new ExportTask(jarFile, outputDir, classes, from, mid, report, done, listener),
+                    new ExportTask(jarFile, outputDir, classes, mid, to, report, done, listener));
+        }
+    }
+
+    public static class ExportReport {
+        public final File outputDir;
+        public final int total;
+        public final Map<String, String> failures = new ConcurrentHashMap<>();
+        public final Set<String> partial = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger exported = new AtomicInteger();
+        public boolean cancelled;
+        public long millis;
+
+        ExportReport(File outputDir, int total) {
+            this.outputDir = outputDir;
+            this.total = total;
+        }
+
+        public int getExported() {
+            return exported.get();
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package su.bytecraft;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.util.Printer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+// Структурный поиск по инструкциям байткода. Шаблон - шаги по одному на строку (или через ';'):
+//   call Bukkit.getScheduler      вызов метода (владелец - полное или простое имя, * и ? - маски)
+//   new *Gson                     создание объекта
+//   get Owner.field / put ...     чтение / запись поля
+//   ldc "text*"                   константа
+//   checkcast *Player             любая инструкция по мнемонике, операнд - маска
+//   any                           одна любая инструкция
+//   ...                           любое число инструкций между шагами (иначе шаги идут подряд)
+//   @loop                         совпадение целиком внутри цикла (тело обратного перехода)
+//   @method onEnable              только методы с таким именем
+public class StructuralSearch {
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private static final int[] CALL_OPCODES = {
+            Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC, Opcodes.INVOKEINTERFACE
+    };
+
+    private final String source;
+    private final List<Step> steps;
+    private final boolean insideLoop;
+    private final Pattern methodFilter;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private StructuralSearch(String source, List<Step> steps, boolean insideLoop, Pattern methodFilter) {
+        this.source = source;
+        this.steps = steps;
+        this.insideLoop = insideLoop;
+        this.methodFilter = methodFilter;
+    }
+
+    // IllegalArgumentException - ошибка в шаблоне (сообщение для пользователя)
+    public static StructuralSearch compile(String pattern) {
+        List<Step> steps = new ArrayList<>();
+        boolean insideLoop = false;
+        Pattern methodFilter = null;
+        boolean gap = false;
+
+        for (String raw : pattern.split("[;\\n]")) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("...")) {
+                gap = true;
+                continue;
+            }
+            if (line.equals("@loop")) {
+                insideLoop = true;
+                continue;
+            }
+            if (line.startsWith("@method")) {
+                String name = line.substring("@method".length()).trim();
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("@method: не указано имя метода");
+                }
+                methodFilter = glob(name);
+                continue;
+            }
+            if (line.startsWith("@")) {
+                throw new IllegalArgumentException("Неизвестная директива: " + line);
+            }
+            Step step = Step.parse(line);
+            step.gapBefore = gap && !steps.isEmpty();
+            steps.add(step);
+            gap = false;
+        }
+
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("Шаблон не содержит ни одной инструкции");
+        }
+        return new StructuralSearch(pattern, steps, insideLoop, methodFilter);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    // Все классы JAR проверяются параллельно; результат - в порядке классов в JAR
+    public List<Match> search(File jarFile, ProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String> names = new ArrayList<>();
+        List<byte[]> classes = new ArrayList<>();
+        try (JarFile jar = new JarFile(jarFile)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                try (InputStream is = jar.getInputStream(entry)) {
+                    names.add(entry.getName());
+                    classes.add(is.readAllBytes());
+                }
+            }
+        }
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bytecraft-structural");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger done = new AtomicInteger();
+        List<Match> result = new ArrayList<>();
+        try {
+            List<Future<List<Match>>> futures = new ArrayList<>();
+            for (int i = 0; i < classes.size(); i++) {
+                String name = names.get(i);
+                byte[] bytes = classes.get(i);
+                futures.add(pool.submit(() -> {
+                    try {
+                        return cancelled.get() ? Collections.<Match>emptyList() : searchClass(name, bytes);
+                    } catch (RuntimeException e) {
+                        System.err.println("⚠️  Пропущен при структурном поиске: " + name + " (" + e + ")");
+                        return Collections.<Match>emptyList();
+                    } finally {
+                        int finished = done.incrementAndGet();
+                        if (listener != null && (finished % 64 == 0 || finished == names.size())) {
+                            listener.onProgress(finished, names.size());
+                        }
+                    }
+                }));
+            }
+            for (Future<List<Match>> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Структурный поиск прерван", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка структурного поиска: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("🧱 Структурный поиск " + jarFile.getName() + ": " + result.size() + " совпадений в " +
+                names.size() + " классах, " + (System.currentTimeMillis() - startTime) + " мс");
+        return result;
+    }
+
+    List<Match> searchClass(String className, byte[] bytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytes).accept(node, ClassReader.SKIP_FRAMES);
+
+        List<Match> matches = new ArrayList<>();
+        for (MethodNode method : node.methods) {
+            if (method.instructions.size() == 0 ||
+                    (methodFilter != null && !methodFilter.matcher(method.name).matches())) {
+                continue;
+            }
+            searchMethod(className, method, matches);
+        }
+        return matches;
+    }
+
+    private void searchMethod(String className, MethodNode method, List<Match> matches) {
+        // Только настоящие инструкции: метки, номера строк и фреймы не мешают шагам идти подряд
+        int size = 0;
+        AbstractInsnNode[] code = new AbstractInsnNode[method.instructions.size()];
+        int[] lines = new int[code.length];
+        Map<LabelNode, Integer> labelTargets = new HashMap<>();
+        List<LabelNode> pendingLabels = new ArrayList<>();
+        int line = 0;
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+            } else if (insn instanceof LabelNode) {
+                pendingLabels.add((LabelNode) insn);
+            } else if (insn.getOpcode() >= 0) {
+                for (LabelNode label : pendingLabels) {
+                    labelTargets.put(label, size);
+                }
+                pendingLabels.clear();
+                lines[size] = line;
+                code[size++] = insn;
+            }
+        }
+
+        // Тело цикла - от цели обратного перехода до самого перехода
+        boolean[] inLoop = null;
+        if (insideLoop) {
+            inLoop = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                if (code[i] instanceof JumpInsnNode) {
+                    Integer target = labelTargets.get(((JumpInsnNode) code[i]).label);
+                    if (target != null && target <= i) {
+                        Arrays.fill(inLoop, target, i + 1, true);
+                    }
+                }
+            }
+        }
+
+        // Совпадения не перекрываются: следующее ищется после конца предыдущего
+        int[] positions = new int[steps.size()];
+        boolean[][] failed = new boolean[steps.size()][size + 1];
+        for (int start = 0; start < size; start++) {
+            if (match(code, size, 0, start, inLoop, positions, failed)) {
+                start = positions[positions.length - 1];
+                StringBuilder snippet = new StringBuilder();
+                for (int p : positions) {
+                    if (snippet.length() > 0) {
+                        snippet.append("; ");
+                    }
+                    snippet.append(describe(code[p]));
+                }
+                matches.add(new Match(className, method.name, method.desc, lines[positions[0]], snippet.toString()));
+            }
+        }
+    }
+
+    // Перебор с возвратом: шаг после "..." пробует подходящие места по порядку, пока не сойдется остаток
+    // шаблона (a; ...; b; c на "a b x b c" берет второй b). Неудачные пары (шаг, позиция) не зависят
+    // от начала совпадения и запоминаются в failed на весь метод
+    private boolean match(AbstractInsnNode[] code, int size, int s, int pos, boolean[] inLoop,
+                          int[] positions, boolean[][] failed) {
+        if (s == steps.size()) {
+            return true;
+        }
+        if (failed[s][pos]) {
+            return false;
+        }
+        Step step = steps.get(s);
+        int last = s == 0 || !step.gapBefore ? Math.min(pos, size - 1) : size - 1;
+        for (int p = pos; p <= last; p++) {
+            if ((inLoop == null || inLoop[p]) && step.matches(code[p])) {
+                positions[s] = p;
+                if (match(code, size, s + 1, p + 1, inLoop, positions, failed)) {
+                    return true;
+                }
+            }
+        }
+        failed[s][pos] = true;
+        return false;
+    }
+
+    static String describe(AbstractInsnNode insn) {
+        String operand = operand(insn);
+        if (insn instanceof LdcInsnNode && ((LdcInsnNode) insn).cst instanceof String) {
+            operand = "\"" + operand.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + "\"";
+        }
+        String mnemonic = Printer.OPCODES[insn.getOpcode()].toLowerCase(Locale.ROOT);
+        return operand != null ? mnemonic + " " + operand : mnemonic;
+    }
+
+    private static String operand(AbstractInsnNode insn) {
+        if (insn instanceof MethodInsnNode) {
+            MethodInsnNode call = (MethodInsnNode) insn;
+            return call.owner.replace('/', '.') + "." + call.name;
+        }
+        if (insn instanceof FieldInsnNode) {
+            FieldInsnNode field = (FieldInsnNode) insn;
+            return field.owner.replace('/', '.') + "." + field.name;
+        }
+        if (insn instanceof TypeInsnNode) {
+            return ((TypeInsnNode) insn).desc.replace('/', '.');
+        }
+        if (insn instanceof LdcInsnNode) {
+            Object value = ((LdcInsnNode) insn).cst;
+            return value instanceof Type ? ((Type) value).getClassName() : String.valueOf(value);
+        }
+        if (insn instanceof IntInsnNode) {
+            return String.valueOf(((IntInsnNode) insn).operand);
+        }
+        if (insn instanceof VarInsnNode) {
+            return String.valueOf(((VarInsnNode) insn).var);
+        }
+        if (insn instanceof IincInsnNode) {
+            return ((IincInsnNode) insn).var + " " + ((IincInsnNode) insn).incr;
+        }
+        if (insn instanceof InvokeDynamicInsnNode) {
+            return ((InvokeDynamicInsnNode) insn).name;
+        }
+        if (insn instanceof MultiANewArrayInsnNode) {
+            return Type.getType(((MultiANewArrayInsnNode) insn).desc).getClassName();
+        }
+        return null;
+    }
+
+    // Маска: * - любые символы, ? - один символ, остальное буквально (без учета регистра)
+    static Pattern glob(String mask) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : mask.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    private static class Step {
+        // Подходящие опкоды (null - любая инструкция)
+        final int[] opcodes;
+        // Маска владельца (типа) и имени; для прочих инструкций - маска всего операнда
+        final Pattern owner;
+        final Pattern name;
+        final Pattern operand;
+        boolean gapBefore;
+
+        Step(int[] opcodes, Pattern owner, Pattern name, Pattern operand) {
+            this.opcodes = opcodes;
+            this.owner = owner;
+            this.name = name;
+            this.operand = operand;
+        }
+
+        static Step parse(String line) {
+            int space = line.indexOf(' ');
+            String keyword = (space < 0 ? line : line.substring(0, space)).toLowerCase(Locale.ROOT);
+            String argument = space < 0 ? "" : line.substring(space + 1).trim();
+
+            switch (keyword) {
+                case "any":
+                    return new Step(null, null, null, null);
+                case "call":
+                    return member(CALL_OPCODES, argument, line);
+                case "get":
+                    return member(new int[]{Opcodes.GETFIELD, Opcodes.GETSTATIC}, argument, line);
+                case "put":
+                    return member(new int[]{Opcodes.PUTFIELD, Opcodes.PUTSTATIC}, argument, line);
+                case "new":
+                    return new Step(new int[]{Opcodes.NEW}, typeMask(argument), null, null);
+                case "ldc":
+                    if (argument.length() >= 2 && argument.startsWith("\"") && argument.endsWith("\"")) {
+                        argument = argument.substring(1, argument.length() - 1);
+                    }
+                    return new Step(new int[]{Opcodes.LDC}, null, null, argument.isEmpty() ? null : glob(argument));
+                default:
+                    for (int opcode = 0; opcode < Printer.OPCODES.length; opcode++) {
+                        if (Printer.OPCODES[opcode].equalsIgnoreCase(keyword)) {
+                            return new Step(new int[]{opcode}, null, null, argument.isEmpty() ? null : glob(argument));
+                        }
+                    }
+                    throw new IllegalArgumentException("Неизвестная инструкция: " + line);
+            }
+        }
+
+        // "Owner.name", "name" или "*"; владелец сравнивается и с полным, и с простым именем
+        private static Step member(int[] opcodes, String argument, String line) {
+            if (argument.isEmpty()) {
+                throw new IllegalArgumentException("Не указан член класса: " + line);
+            }
+            int dot = argument.lastIndexOf('.');
+            Pattern owner = dot < 0 ? null : typeMask(argument.substring(0, dot));
+            String name = argument.substring(dot + 1);
+            return new Step(opcodes, owner, name.equals("*") ? null : glob(name), null);
+        }
+
+        private static Pattern typeMask(String type) {
+            return type.isEmpty() || type.equals("*") ? null : glob(type.replace('/', '.'));
+        }
+
+        boolean matches(AbstractInsnNode insn) {
+            if (opcodes != null) {
+                boolean known = false;
+                for (int opcode : opcodes) {
+                    if (opcode == insn.getOpcode()) {
+                        known = true;
+                        break;
+                    }
+                }
+                if (!known) {
+                    return false;
+                }
+            }
+            if (insn instanceof MethodInsnNode && (owner != null || name != null)) {
+                MethodInsnNode call = (MethodInsnNode) insn;
+                return matchesType(call.owner) && (name == null || name.matcher(call.name).matches());
+            }
+            if (insn instanceof FieldInsnNode && (owner != null || name != null)) {
+                FieldInsnNode field = (FieldInsnNode) insn;
+                return matchesType(field.owner) && (name == null || name.matcher(field.name).matches());
+            }
+            if (insn instanceof TypeInsnNode && owner != null) {
+                return matchesType(((TypeInsnNode) insn).desc);
+            }
+            if (operand != null) {
+                String text = operand(insn);
+                return text != null && operand.matcher(text).matches();
+            }
+            return true;
+        }
+
+        private boolean matchesType(String internalName) {
+            if (owner == null) {
+                return true;
+            }
+            String dotted = internalName.replace('/', '.');
+            return owner.matcher(dotted).matches() ||
+                    owner.matcher(dotted.substring(dotted.lastIndexOf('.') + 1)).matches();
+        }
+    }
+
+    public static class Match {
+        // Запись класса в JAR ("a/b/C.class")
+        public final String className;
+        public final String methodName;
+        public final String methodDescriptor;
+        // Строка из LineNumberTable (0 - класс собран без отладочной информации)
+        public final int line;
+        public final String snippet;
+
+        Match(String className, String methodName, String methodDescriptor, int line, String snippet) {
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+            this.line = line;
+            this.snippet = snippet;
+        }
+
+        @Override
+        public String toString() {
+            return className.replace(".class", "").replace('/', '.') + "." + methodName +
+                    (line > 0 ? " : строка " + line : "") + "   " + snippet;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package su.bytecraft;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.regex.Pattern;
+
+// Инвертированный индекс триграмм по декомпилированным исходникам всего JAR.
+// Строится в фоне; регулярка сначала сужается до классов, содержащих все ее обязательные
+// литералы, и только по ним запускается Pattern. Тексты хранятся сжатыми, CFR при поиске не нужен.
+public class TrigramIndex {
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private final File jarFile;
+    private final List<String> classes = new ArrayList<>();
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final List<byte[]> sources = new ArrayList<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    // Классы, не попавшие в индекс: класс -> причина (лимит времени, ошибка CFR)
+    private final Map<String, String> skipped = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile boolean ready;
+    private volatile int total;
+    private final AtomicInteger done = new AtomicInteger();
+
+    private TrigramIndex(File jarFile) {
+        this.jarFile = jarFile.getAbsoluteFile();
+    }
+
+    // Запускает построение на потоках с минимальным приоритетом и сразу возвращает индекс
+    public static TrigramIndex buildInBackground(Decompiler decompiler, File jarFile, ProgressListener listener) {
+        TrigramIndex index = new TrigramIndex(jarFile);
+        Thread thread = new Thread(() -> index.build(decompiler, listener), "bytecraft-trigram");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return index;
+    }
+
+    public boolean isFor(File file) {
+        return jarFile.equals(file.getAbsoluteFile());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public int getProgressPercent() {
+        return total == 0 ? 0 : done.get() * 100 / total;
+    }
+
+    public synchronized int getClassCount() {
+        return classes.size();
+    }
+
+    // Поиск по индексу их не видит
+    public Map<String, String> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    // Классы-кандидаты: все остальные гарантированно не содержат совпадений
+    public List<String> candidateClasses(Pattern pattern) {
+        List<String> result = new ArrayList<>();
+        synchronized (this) {
+            BitSet candidates = candidates(pattern);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                result.add(classes.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Распаковка вне блокировки: несколько потоков поиска читают исходники параллельно
+    public String getSource(String className) {
+        byte[] compressed;
+        synchronized (this) {
+            Integer id = classIds.get(className);
+            if (id == null) {
+                return null;
+            }
+            compressed = sources.get(id);
+        }
+        return decompress(compressed);
+    }
+
+    // ========== ПОСТРОЕНИЕ ==========
+
+    private void build(Decompiler decompiler, ProgressListener listener) {
+        long startTime = System.currentTimeMillis();
+        List<String> files;
+        try {
+            files = SourceExporter.groupByOuterClass(decompiler.getClassesFromJar(jarFile));
+        } catch (IOException e) {
+            System.err.println("⚠️  Индекс исходников не построен: " + e.getMessage());
+            return;
+        }
+        total = files.size();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bytecraft-trigram-worker");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        for (String className : files) {
+            pool.submit(() -> {
+                if (cancelled.get()) {
+                    return;
+                }
+                try {
+                    // Открытие класса пользователем важнее фоновой индексации
+                    while (decompiler.hasInteractiveWork() && !cancelled.get()) {
+                        Thread.sleep(50);
+                    }
+                    // Лимит времени на класс, без записи в кэши: тысячи фоновых классов не вытесняют открытые
+                    addSource(className, decompiler.decompileInBackground(jarFile, className,
+                            Decompiler.DEFAULT_TIMEOUT_MS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (TimeoutException e) {
+                    skipped.put(className, "не уложился в " + Decompiler.DEFAULT_TIMEOUT_MS + " мс");
+                } catch (Exception e) {
+                    // Класс, который CFR не осилил, просто не попадет в индекс
+                    skipped.put(className, e.getMessage() != null ? e.getMessage() : e.toString());
+                }
+                int finished = done.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(finished, files.size());
+                }
+            });
+        }
+
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (cancelled.get()) {
+                    pool.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            return;
+        }
+
+        if (!cancelled.get()) {
+            ready = true;
+            System.out.println("🔤 Индекс исходников " + jarFile.getName() + ": " + classes.size() + " файлов, " +
+                    postings.size() + " триграмм, пропущено " + skipped.size() + ", " +
+                    (System.currentTimeMillis() - startTime) + " мс");
+        }
+    }
+
+    private void addSource(String className, String code) {
+        long[] trigrams = uniqueTrigrams(code);
+        byte[] compressed = compress(code);
+
+        synchronized (this) {
+            int id = classes.size();
+            classes.add(className);
+            classIds.put(className, id);
+            sources.add(compressed);
+            for (long trigram : trigrams) {
+                postings.computeIfAbsent(trigram, k -> new IntList()).add(id);
+            }
+        }
+    }
+
+    // ========== ЗАПРОС ==========
+
+    private BitSet candidates(Pattern pattern) {
+        BitSet all = new BitSet();
+        all.set(0, classes.size());
+
+        // Флаги, меняющие смысл символов шаблона, - без сужения
+        if ((pattern.flags() & (Pattern.COMMENTS | Pattern.LITERAL)) != 0) {
+            return all;
+        }
+        List<List<String>> branches = requiredLiterals(pattern.pattern());
+        if (branches == null) {
+            return all;
+        }
+
+        BitSet result = new BitSet();
+        for (List<String> literals : branches) {
+            BitSet branch = (BitSet) all.clone();
+            for (String literal : literals) {
+                for (long trigram : uniqueTrigrams(literal)) {
+                    IntList list = postings.get(trigram);
+                    if (list == null) {
+                        branch.clear();
+                        break;
+                    }
+                    BitSet present = new BitSet();
+                    for (int i = 0; i < list.size; i++) {
+                        present.set(list.data[i]);
+                    }
+                    branch.and(present);
+                }
+            }
+            result.or(branch);
+        }
+        return result;
+    }
+
+    // Обязательные литералы регулярки: ветки верхнего уровня (ИЛИ), в каждой - строки, которые
+    // обязаны встретиться (И). Все непонятное (группы, классы символов, \w...) просто разрывает литерал,
+    // поэтому результат всегда консервативен. null - хотя бы одна ветка без литерала из 3+ символов.
+    static List<List<String>> requiredLiterals(String regex) {
+        List<List<String>> branches = new ArrayList<>();
+        for (String branch : splitTopLevel(regex)) {
+            List<String> literals = branchLiterals(branch);
+            if (literals.isEmpty()) {
+                return null;
+            }
+            branches.add(literals);
+        }
+        return branches;
+    }
+
+    private static List<String> splitTopLevel(String regex) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? regex.length() : end + 1;
+                } else {
+                    i++;
+                }
+            } else if (inClass) {
+                if (c == ']') inClass = false;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                parts.add(regex.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(regex.substring(start));
+        return parts;
+    }
+
+    private static List<String> branchLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int n = regex.length();
+        int i = 0;
+
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= n) {
+                    break;
+                }
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    run.append(end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end));
+                    i = end < 0 ? n : end + 2;
+                } else if (Character.isLetterOrDigit(next)) {
+                    // \d, \w, \b, \n, \x41... - не литерал
+                    flush(run, literals);
+                    i += 2;
+                } else {
+                    run.append(next);
+                    i += 2;
+                }
+            } else if (c == '*' || c == '?') {
+                // Предыдущий символ необязателен
+                dropLast(run);
+                flush(run, literals);
+                i = skipQuantifierSuffix(regex, i + 1);
+            } else if (c == '+') {
+                flush(run, literals);
+                i = skipQuantifierSuffix(regex, i + 1);
+            } else if (c == '{') {
+                int end = regex.indexOf('}', i);
+                if (end < 0) {
+                    break;
+                }
+                String bounds = regex.substring(i + 1, end);
+                if (bounds.startsWith("0") || bounds.startsWith(",")) {
+                    dropLast(run);
+                }
+                flush(run, literals);
+                i = skipQuantifierSuffix(regex, end + 1);
+            } else if (c == '(') {
+                flush(run, literals);
+                i = skipGroup(regex, i);
+            } else if (c == '[') {
+                flush(run, literals);
+                i = skipCharClass(regex, i);
+            } else if (c == '.' || c == '^' || c == '$' || c == ')' || c == '|') {
+                flush(run, literals);
+                i++;
+            } else {
+                run.append(c);
+                i++;
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    private static void dropLast(StringBuilder run) {
+        if (run.length() > 0) {
+            run.setLength(run.length() - 1);
+        }
+    }
+
+    private static int skipQuantifierSuffix(String regex, int i) {
+        return i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+') ? i + 1 : i;
+    }
+
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipCharClass(regex, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return regex.length();
+    }
+
+    private static int skipCharClass(String regex, int i) {
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return regex.length();
+    }
+
+    // Триграммы без учета регистра: так индекс годится и для поиска с учетом регистра (надмножество)
+    private static long[] uniqueTrigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] result = new long[text.length() - 2];
+        long c0 = Character.toLowerCase(text.charAt(0));
+        long c1 = Character.toLowerCase(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            long c2 = Character.toLowerCase(text.charAt(i));
+            result[i - 2] = (c0 << 32) | (c1 << 16) | c2;
+            c0 = c1;
+            c1 = c2;
+        }
+        Arrays.sort(result);
+
+        int unique = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[unique++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    private static byte[] compress(String text) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 4 + 16);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buf);
+                if (count == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(buf, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return "";
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+}
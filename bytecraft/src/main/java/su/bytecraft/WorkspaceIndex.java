@@ -0,0 +1,262 @@
+package su.bytecraft;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// Поиск по всей папке плагинов ("какой из 80 плагинов ссылается на этот класс/строку").
+// Каждый JAR индексируется отдельно (BytecodeSearchIndex) параллельно, а тексты всех JAR сводятся в один
+// общий словарь: одинаковая строка или ссылка на Bukkit API хранится и проверяется регуляркой один раз.
+// Не изменившиеся JAR (путь, размер, дата) не переиндексируются: в пределах сеанса индекс держится
+// в памяти, между запусками - берется с диска (SearchIndexStore).
+public class WorkspaceIndex {
+
+    public interface ProgressListener {
+        void onProgress(int done, int total, String jarName);
+    }
+
+    private final File folder;
+    // Индексы отдельных JAR переживают обновления, пока файл не изменился
+    private final Map<File, BytecodeSearchIndex> segments = new HashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new File[0], new BytecodeSearchIndex[0],
+            new String[0], new int[1], new int[0], new int[0]);
+
+    public WorkspaceIndex(File folder) {
+        this.folder = folder.getAbsoluteFile();
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public int getJarCount() {
+        return snapshot.jars.length;
+    }
+
+    public synchronized RefreshReport refresh(ProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        File[] found = folder.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".jar"));
+        if (found == null) {
+            throw new IOException("Папка недоступна: " + folder);
+        }
+        List<File> jars = new ArrayList<>();
+        for (File jar : found) {
+            if (jar.isFile()) {
+                jars.add(jar.getAbsoluteFile());
+            }
+        }
+        jars.sort(Comparator.comparing(file -> file.getName().toLowerCase(Locale.ROOT)));
+
+        segments.keySet().retainAll(jars);
+        List<File> stale = new ArrayList<>();
+        for (File jar : jars) {
+            BytecodeSearchIndex segment = segments.get(jar);
+            if (segment == null || !segment.isFor(jar)) {
+                stale.add(jar);
+            }
+        }
+
+        List<String> failed = buildSegments(stale, listener);
+        // Битые JAR не валят всю папку - просто не участвуют в поиске
+        jars.removeIf(jar -> !segments.containsKey(jar));
+        snapshot = merge(jars);
+
+        RefreshReport report = new RefreshReport(jars.size(), stale.size() - failed.size(),
+                jars.size() - (stale.size() - failed.size()), failed, snapshot.terms.length,
+                System.currentTimeMillis() - startTime);
+        System.out.println("🗄 Рабочая папка " + folder.getName() + ": " + report);
+        return report;
+    }
+
+    // Совпадения, сгруппированные по JAR (по имени), внутри - по классам
+    public Map<File, Map<String, List<BytecodeSearchIndex.Hit>>> search(Pattern pattern,
+                                                                        Set<BytecodeSearchIndex.Kind> kinds) {
+        Snapshot current = snapshot;
+
+        // Регулярка проверяется по общему словарю один раз, затем совпавшие термины раздаются по JAR
+        int[][] matchedBySegment = new int[current.jars.length][];
+        int[] counts = new int[current.jars.length];
+        for (int term = 0; term < current.terms.length; term++) {
+            if (!pattern.matcher(current.terms[term]).find()) {
+                continue;
+            }
+            for (int i = current.firstLocation[term]; i < current.firstLocation[term + 1]; i++) {
+                int segment = current.locationSegment[i];
+                int[] matched = matchedBySegment[segment];
+                if (matched == null) {
+                    matched = matchedBySegment[segment] = new int[16];
+                } else if (counts[segment] == matched.length) {
+                    matched = matchedBySegment[segment] = Arrays.copyOf(matched, matched.length * 2);
+                }
+                matched[counts[segment]++] = current.locationTerm[i];
+            }
+        }
+
+        Map<File, Map<String, List<BytecodeSearchIndex.Hit>>> result = new LinkedHashMap<>();
+        for (int segment = 0; segment < current.jars.length; segment++) {
+            if (counts[segment] == 0) {
+                continue;
+            }
+            // Порядок терминов JAR - тот же порядок совпадений, что и при поиске по одному плагину
+            Arrays.sort(matchedBySegment[segment], 0, counts[segment]);
+            Map<String, List<BytecodeSearchIndex.Hit>> hits =
+                    current.segments[segment].hitsFor(matchedBySegment[segment], counts[segment], kinds);
+            if (!hits.isEmpty()) {
+                result.put(current.jars[segment], hits);
+            }
+        }
+        return result;
+    }
+
+    // ========== ПОСТРОЕНИЕ ==========
+
+    private List<String> buildSegments(List<File> stale, ProgressListener listener) throws IOException {
+        List<String> failed = new ArrayList<>();
+        if (stale.isEmpty()) {
+            return failed;
+        }
+
+        int threads = Math.min(stale.size(), Math.max(1, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bytecraft-workspace");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger done = new AtomicInteger();
+        try {
+            List<Future<BytecodeSearchIndex>> futures = new ArrayList<>();
+            for (File jar : stale) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        return BytecodeSearchIndex.open(jar, null);
+                    } finally {
+                        if (listener != null) {
+                            listener.onProgress(done.incrementAndGet(), stale.size(), jar.getName());
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < stale.size(); i++) {
+                File jar = stale.get(i);
+                try {
+                    segments.put(jar, futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("⚠️  Пропущен JAR рабочей папки: " + jar.getName() + " (" + e.getCause() + ")");
+                    segments.remove(jar);
+                    failed.add(jar.getName());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Индексация папки прервана", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return failed;
+    }
+
+    // Общий словарь: текст -> (JAR, id термина в JAR), сгруппировано по тексту (CSR)
+    private Snapshot merge(List<File> jars) {
+        BytecodeSearchIndex[] ordered = new BytecodeSearchIndex[jars.size()];
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        int total = 0;
+        for (int s = 0; s < ordered.length; s++) {
+            ordered[s] = segments.get(jars.get(s));
+            total += ordered[s].getTermCount();
+        }
+
+        int[] pairTerm = new int[total];
+        int[] pairSegment = new int[total];
+        int[] pairLocal = new int[total];
+        int pairs = 0;
+        for (int s = 0; s < ordered.length; s++) {
+            BytecodeSearchIndex segment = ordered[s];
+            for (int local = 0; local < segment.getTermCount(); local++) {
+                if (!segment.hasPostings(local)) {
+                    continue;
+                }
+                String text = segment.getTerm(local);
+                Integer id = ids.get(text);
+                if (id == null) {
+                    id = terms.size();
+                    ids.put(text, id);
+                    terms.add(text);
+                }
+                pairTerm[pairs] = id;
+                pairSegment[pairs] = s;
+                pairLocal[pairs] = local;
+                pairs++;
+            }
+        }
+
+        // Сортировка подсчетом по термину
+        int[] firstLocation = new int[terms.size() + 1];
+        for (int p = 0; p < pairs; p++) {
+            firstLocation[pairTerm[p] + 1]++;
+        }
+        for (int t = 0; t < terms.size(); t++) {
+            firstLocation[t + 1] += firstLocation[t];
+        }
+        int[] next = Arrays.copyOf(firstLocation, terms.size());
+        int[] locationSegment = new int[pairs];
+        int[] locationTerm = new int[pairs];
+        for (int p = 0; p < pairs; p++) {
+            int slot = next[pairTerm[p]]++;
+            locationSegment[slot] = pairSegment[p];
+            locationTerm[slot] = pairLocal[p];
+        }
+
+        return new Snapshot(jars.toArray(new File[0]), ordered, terms.toArray(new String[0]),
+                firstLocation, locationSegment, locationTerm);
+    }
+
+    // Неизменяемое состояние для поиска: обновление подменяет его целиком
+    private static class Snapshot {
+        final File[] jars;
+        final BytecodeSearchIndex[] segments;
+        final String[] terms;
+        final int[] firstLocation;
+        final int[] locationSegment;
+        final int[] locationTerm;
+
+        Snapshot(File[] jars, BytecodeSearchIndex[] segments, String[] terms,
+                 int[] firstLocation, int[] locationSegment, int[] locationTerm) {
+            this.jars = jars;
+            this.segments = segments;
+            this.terms = terms;
+            this.firstLocation = firstLocation;
+            this.locationSegment = locationSegment;
+            this.locationTerm = locationTerm;
+        }
+    }
+
+    public static class RefreshReport {
+        public final int jarCount;
+        public final int indexedCount;
+        public final int reusedCount;
+        public final List<String> failedJars;
+        public final int termCount;
+        public final long elapsedMs;
+
+        RefreshReport(int jarCount, int indexedCount, int reusedCount, List<String> failedJars,
+                      int termCount, long elapsedMs) {
+            this.jarCount = jarCount;
+            this.indexedCount = indexedCount;
+            this.reusedCount = reusedCount;
+            this.failedJars = failedJars;
+            this.termCount = termCount;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return jarCount + " JAR (проиндексировано " + indexedCount + ", без изменений " + reusedCount +
+                    (failedJars.isEmpty() ? "" : ", с ошибками " + failedJars.size()) + "), " +
+                    termCount + " терминов, " + elapsedMs + " мс";
+        }
+    }
+}
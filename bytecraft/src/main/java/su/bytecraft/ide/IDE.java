@@ -1,8 +1,14 @@
 package su.bytecraft.ide;
 
+import su.bytecraft.BytecodeListing;
+import su.bytecraft.ClassOutline;
 import su.bytecraft.Decompiler;
+import su.bytecraft.GoToIndex;
 import su.bytecraft.JarPatcher;
 import su.bytecraft.JavaCompiler;
+import su.bytecraft.MethodSlicer;
+import su.bytecraft.PatchSet;
+import su.bytecraft.SourceExporter;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -10,6 +16,7 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -18,9 +25,12 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.Pattern;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class IDE extends Application {
 
@@ -50,10 +60,24 @@ public class IDE extends Application {
     private SearchManager searchManager;
 
     // Данные
-    private File currentJar;
+    // Читается и из фоновых задач executor
+    private volatile File currentJar;
     private String currentClassName;
+    private String currentClassEntry;
+    // true - в редакторе исходник класса, который можно собрать в патч (а не листинг/сводка)
+    private boolean sourceView;
+    private LineIndex lineIndex;
+    private volatile SourceExporter activeExport;
+    private volatile GoToIndex goToIndex;
+    // Правки, отложенные в патч: полное имя класса -> исходник (собираются в один JAR)
+    private final Map<String, String> pendingPatch = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicLong decompileGeneration = new AtomicLong();
+    private Future<?> pendingDecompile;
     private final ExecutorService executor = Executors.newFixedThreadPool(3);
 
+    // Размер порции текста для редактора (символов)
+    private static final int EDITOR_CHUNK_CHARS = 32 * 1024;
+
     @Override
     public void start(Stage primaryStage) {
         setupExceptionHandling();
@@ -125,10 +149,17 @@ public class IDE extends Application {
 
         Button openBtn = createToolbarButton("📁 Открыть плагин", this::openPlugin);
         Button decompileBtn = createToolbarButton("🔧 Декомпилировать", this::decompileSelected);
+        Button stageBtn = createToolbarButton("➕ В патч", this::addCurrentClassToPatch);
         Button patchBtn = createToolbarButton("⚡ Собрать патч", this::compileAndPack);
         Button advancedSearchBtn = createToolbarButton("🔍 Расширенный поиск", this::showAdvancedSearch);
-
-        toolbar.getChildren().addAll(openBtn, decompileBtn, patchBtn, advancedSearchBtn);
+        Button bytecodeBtn = createToolbarButton("📜 Байткод", this::showSelectedBytecode);
+        Button methodBtn = createToolbarButton("🧩 Метод", this::showMethodPicker);
+        Button goToBtn = createToolbarButton("🧭 Перейти", this::showGoToPalette);
+        Button usagesBtn = createToolbarButton("🔗 Использования", () -> searchManager.showUsagesDialog());
+        Button hierarchyBtn = createToolbarButton("🧬 Иерархия", () -> searchManager.showHierarchyDialog());
+        Button exportBtn = createToolbarButton("📤 Экспорт исходников", this::exportSources);
+
+        toolbar.getChildren().addAll(openBtn, goToBtn, decompileBtn, bytecodeBtn, methodBtn, usagesBtn, hierarchyBtn, stageBtn, patchBtn, advancedSearchBtn, exportBtn);
         return toolbar;
     }
 
@@ -224,6 +255,8 @@ public class IDE extends Application {
 
     private ScrollPane createEditorArea() {
         codeArea = new TextArea();
+        // Таблица строк пересобирается лениво, только после изменения текста
+        codeArea.textProperty().addListener((obs, oldText, newText) -> lineIndex = null);
         return UIStyles.createEditorArea(codeArea);
     }
 
@@ -287,12 +320,32 @@ public class IDE extends Application {
             boolean searchImports = importCheck.isSelected();
 
             if (searchImports) {
-                pattern = "import.*" + Pattern.quote(pattern) + ".*;";
-                useRegex = true;
+                // Импорты в байткоде - это ссылки на типы, их отвечает индекс
+                searchManager.performTypeSearch(pattern, caseSensitive);
+            } else {
+                searchManager.performSearch(pattern, true, caseSensitive, false, useRegex);
             }
+            searchStage.close();
+        });
+
+        // Тот же запрос по всем JAR выбранной папки (например, plugins/ сервера)
+        Button workspaceBtn = UIStyles.createButton("🗄 В папке плагинов...");
+        workspaceBtn.setOnAction(e -> {
+            String pattern = searchPatternArea.getText().trim();
+            if (pattern.isEmpty()) {
+                showWarning("Пустой поиск", "Введите текст для поиска");
+                return;
+            }
+            searchStage.close();
+            searchManager.performWorkspaceSearch(pattern, caseCheck.isSelected(),
+                    regexCheckBox.isSelected(), importCheck.isSelected());
+        });
 
-            searchManager.performSearch(pattern, true, caseSensitive, false, useRegex);
+        // Шаблон по инструкциям байткода ("вызов внутри цикла"), текст поля - начальный шаблон
+        Button structuralBtn = UIStyles.createButton("🧱 Структурный...");
+        structuralBtn.setOnAction(e -> {
             searchStage.close();
+            searchManager.showStructuralSearch(searchPatternArea.getText().trim());
         });
 
         Button cancelBtn = UIStyles.createSmallButton("Отмена");
@@ -300,7 +353,7 @@ public class IDE extends Application {
 
         HBox buttonBox = new HBox(10);
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
-        buttonBox.getChildren().addAll(cancelBtn, searchAllBtn);
+        buttonBox.getChildren().addAll(cancelBtn, structuralBtn, workspaceBtn, searchAllBtn);
 
         root.getChildren().addAll(title, searchPatternArea, optionsBox, buttonBox);
 
@@ -337,6 +390,15 @@ public class IDE extends Application {
             } else if (event.isControlDown() && event.getCode() == javafx.scene.input.KeyCode.G) {
                 showAdvancedSearch();
                 event.consume();
+            } else if (event.isAltDown() && event.getCode() == javafx.scene.input.KeyCode.F7) {
+                searchManager.showUsagesDialog();
+                event.consume();
+            } else if (event.isControlDown() && event.getCode() == javafx.scene.input.KeyCode.H) {
+                searchManager.showHierarchyDialog();
+                event.consume();
+            } else if (event.isControlDown() && event.getCode() == javafx.scene.input.KeyCode.N) {
+                showGoToPalette();
+                event.consume();
             }
         });
     }
@@ -378,15 +440,7 @@ public class IDE extends Application {
 
             File file = fileChooser.showOpenDialog(primaryStage);
             if (file != null) {
-                currentJar = file;
-                updateStatus("Открыт: " + file.getName());
-                System.out.println("📦 Открыт файл: " + file.getAbsolutePath());
-                loadClassTree();
-
-                // Сбрасываем поиск
-                searchManager.resetSearch();
-                searchResultLabel.setText("");
-                searchField.setText("");
+                openPlugin(file);
             }
         } catch (Exception e) {
             System.err.println("❌ Ошибка при открытии плагина:");
@@ -395,15 +449,41 @@ public class IDE extends Application {
         }
     }
 
+    public void openPlugin(File file) {
+        if (!pendingPatch.isEmpty()) {
+            System.out.println("🗑 Отложенные правки сброшены: " + pendingPatch.keySet());
+            pendingPatch.clear();
+        }
+        currentJar = file;
+        updateStatus("Открыт: " + file.getName());
+        System.out.println("📦 Открыт файл: " + file.getAbsolutePath());
+        loadClassTree();
+
+        // Сбрасываем поиск
+        searchManager.resetSearch();
+        searchResultLabel.setText("");
+        searchField.setText("");
+    }
+
     public void loadClassTree() {
-        if (currentJar == null) return;
+        File jar = currentJar;
+        if (jar == null) return;
 
         showProgress(true);
 
         executor.submit(() -> {
             try {
-                System.out.println("🌳 Загрузка дерева классов из: " + currentJar.getName());
-                List<String> classes = decompiler.getClassesFromJar(currentJar);
+                // Сессия держит JAR и Spigot API открытыми до смены плагина
+                decompiler.openSession(jar);
+                // Фоновый индекс исходников для быстрого поиска регулярками
+                searchManager.startSourceIndexing(jar);
+                // Индекс байткода: сохраненный открывается сразу, иначе строится в фоне
+                searchManager.preloadSearchIndex(jar);
+                // Палитра перехода (Ctrl+N): имена классов и членов, без кода методов
+                buildGoToIndex(jar);
+
+                System.out.println("🌳 Загрузка дерева классов из: " + jar.getName());
+                List<String> classes = decompiler.getClassesFromJar(jar);
                 System.out.println("📊 Найдено классов: " + classes.size());
 
                 Platform.runLater(() -> {
@@ -474,26 +554,401 @@ public class IDE extends Application {
         }
 
         currentClassName = className.replace(".class", "").replace("/", ".");
+        currentClassEntry = className;
         updateStatus("Декомпиляция...");
         showProgress(true);
 
-        executor.submit(() -> {
+        // Новый запрос вытесняет предыдущий: старый прерываем, его результат не покажем
+        long generation = decompileGeneration.incrementAndGet();
+        if (pendingDecompile != null) {
+            pendingDecompile.cancel(true);
+        }
+
+        File jar = currentJar;
+        String displayName = currentClassName;
+        pendingDecompile = executor.submit(() -> {
             try {
+                // Класс из отложенного патча показываем с правками, а не заново декомпилированным
+                String staged = pendingPatch.get(displayName);
+                if (staged != null) {
+                    streamIntoEditor(generation, splitIntoChunks(staged, EDITOR_CHUNK_CHARS), true,
+                            "📝 Правки из патча: " + displayName);
+                    return;
+                }
+
                 System.out.println("🔧 Декомпиляция класса: " + className);
-                String code = decompiler.decompileClassFromJar(currentJar, className);
-                System.out.println("✅ Класс декомпилирован, размер кода: " + code.length() + " символов");
+                if (!decompiler.isCached(jar, className)) {
+                    // Пока CFR анализирует класс, сразу показываем его сводку
+                    String outline = "// Декомпиляция " + displayName + "...\n\n" +
+                            ClassOutline.render(decompiler.readClassBytes(jar, className));
+                    Platform.runLater(() -> {
+                        if (generation == decompileGeneration.get()) {
+                            codeArea.setText(outline);
+                            sourceView = false;
+                        }
+                    });
+                }
 
+                String code;
+                String status;
+                boolean compilable = false;
+                try {
+                    code = decompiler.decompileWithTimeout(jar, className, Decompiler.DEFAULT_TIMEOUT_MS);
+                    status = "✅ Декомпилирован: " + displayName;
+                    compilable = true;
+                    // Пока пользователь читает класс, в фоне готовим его соседей
+                    decompiler.prefetchNeighbours(jar, className);
+                    System.out.println("✅ Класс декомпилирован, размер кода: " + code.length() + " символов");
+                } catch (Decompiler.DecompilationException e) {
+                    code = "// " + e.getMessage();
+                    status = "⚠️ Не удалось декомпилировать: " + displayName;
+                } catch (TimeoutException e) {
+                    // Дешевый запасной вид: сводка класса без тел методов
+                    System.out.println("⏱ Превышен лимит декомпиляции для " + className);
+                    code = "// Декомпиляция не уложилась в " + Decompiler.DEFAULT_TIMEOUT_MS + " мс.\n" +
+                            "// Показана сводка класса (без тел методов), код методов - кнопка \"📜 Байткод\".\n\n" +
+                            ClassOutline.render(decompiler.readClassBytes(jar, className));
+                    status = "⏱ Превышен лимит, показана сводка: " + displayName;
+                }
+
+                streamIntoEditor(generation, splitIntoChunks(code, EDITOR_CHUNK_CHARS), compilable, status);
+            } catch (InterruptedException | CancellationException e) {
+                System.out.println("⏭ Декомпиляция " + className + " отменена более новым запросом");
+            } catch (Exception e) {
+                if (generation != decompileGeneration.get()) {
+                    return;
+                }
+                System.err.println("❌ Ошибка при декомпиляции класса " + className + ":");
+                e.printStackTrace();
                 Platform.runLater(() -> {
-                    codeArea.setText(code);
                     showProgress(false);
-                    updateStatus("✅ Декомпилирован: " + currentClassName);
+                    showError("Ошибка декомпиляции", e.getMessage());
+                });
+            }
+        });
+    }
 
+    public void showSelectedBytecode() {
+        TreeItem<String> selected = fileTree.getSelectionModel().getSelectedItem();
+        if (selected != null && selected.isLeaf() && selected.getValue().endsWith(".class")) {
+            showBytecode(selected.getValue());
+        } else if (currentClassEntry != null) {
+            showBytecode(currentClassEntry);
+        } else {
+            showWarning("Выберите класс", "Выберите класс в списке слева");
+        }
+    }
+
+    // Листинг байткода: строится за миллисекунды и подается в редактор страницами,
+    // чтобы огромные классы не замораживали FX-поток одной гигантской setText
+    public void showBytecode(String className) {
+        if (currentJar == null) {
+            showWarning("Нет плагина", "Сначала откройте плагин");
+            return;
+        }
+
+        currentClassName = className.replace(".class", "").replace("/", ".");
+        currentClassEntry = className;
+        updateStatus("Листинг байткода...");
+
+        long generation = decompileGeneration.incrementAndGet();
+        if (pendingDecompile != null) {
+            pendingDecompile.cancel(true);
+        }
+
+        File jar = currentJar;
+        String displayName = currentClassName;
+        pendingDecompile = executor.submit(() -> {
+            try {
+                List<String> pages = BytecodeListing.render(decompiler.readClassBytes(jar, className));
+                streamIntoEditor(generation, pages, false, "📜 Байткод: " + displayName);
+            } catch (Exception e) {
+                if (generation != decompileGeneration.get()) {
+                    return;
+                }
+                System.err.println("❌ Ошибка листинга " + className + ":");
+                e.printStackTrace();
+                showError("Ошибка листинга", e.getMessage());
+            }
+        });
+    }
+
+    // Большой текст подается в редактор частями: каждая часть - отдельный runLater,
+    // между ними FX-поток успевает обработать ввод и перерисовку
+    private void streamIntoEditor(long generation, List<String> parts, boolean compilable, String doneStatus) {
+        for (int i = 0; i < parts.size(); i++) {
+            if (generation != decompileGeneration.get()) {
+                return;
+            }
+            String part = parts.get(i);
+            boolean first = i == 0;
+            boolean last = i == parts.size() - 1;
+            int shown = i + 1;
+            Platform.runLater(() -> {
+                if (generation != decompileGeneration.get()) {
+                    return;
+                }
+                if (first) {
+                    codeArea.setText(part);
+                    codeArea.positionCaret(0);
+                    sourceView = false;
                     // Сбрасываем поиск при смене класса
                     searchManager.resetSearch();
                     searchResultLabel.setText("");
-                });
+                } else {
+                    codeArea.appendText(part);
+                }
+                if (last) {
+                    sourceView = compilable;
+                    showProgress(false);
+                    updateStatus(doneStatus);
+                } else {
+                    setProgress((double) shown / parts.size());
+                }
+            });
+        }
+    }
+
+    // Режем по границам строк, чтобы каждая порция была целыми строками
+    static List<String> splitIntoChunks(String text, int chunkChars) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > chunkChars) {
+            int cut = text.lastIndexOf('\n', start + chunkChars);
+            cut = cut < start ? start + chunkChars : cut + 1;
+            chunks.add(text.substring(start, cut));
+            start = cut;
+        }
+        chunks.add(text.substring(start));
+        return chunks;
+    }
+
+    // ========== ПЕРЕХОД К КЛАССУ ==========
+
+    private void buildGoToIndex(File jar) {
+        goToIndex = null;
+        executor.submit(() -> {
+            try {
+                GoToIndex index = GoToIndex.build(jar);
+                // Пока строился, могли открыть другой плагин
+                if (jar.equals(currentJar)) {
+                    goToIndex = index;
+                }
             } catch (Exception e) {
-                System.err.println("❌ Ошибка при декомпиляции класса " + className + ":");
+                System.err.println("⚠️  Индекс перехода не построен: " + e.getMessage());
+            }
+        });
+    }
+
+    public void showGoToPalette() {
+        if (currentJar == null) {
+            showWarning("Нет плагина", "Сначала откройте JAR файл");
+            return;
+        }
+        GoToIndex index = goToIndex;
+        if (index == null || !index.isFor(currentJar)) {
+            showWarning("Индекс строится", "Список классов еще загружается, повторите через секунду");
+            return;
+        }
+
+        Stage paletteStage = new Stage();
+        paletteStage.initModality(Modality.WINDOW_MODAL);
+        paletteStage.initOwner(primaryStage);
+        paletteStage.setTitle("Переход к классу или члену");
+        paletteStage.setWidth(750);
+        paletteStage.setHeight(500);
+
+        VBox root = new VBox(10);
+        root.setPadding(UIStyles.PADDING_LARGE);
+        root.setStyle(UIStyles.getRootStyle());
+
+        TextField queryField = UIStyles.createSearchField();
+        queryField.setPromptText("Имя класса или члена: префикс, горбы (PIE → PlayerInteractEvent), Класс.метод...");
+        ListView<GoToIndex.Entry> resultList = new ListView<>();
+        VBox.setVgrow(resultList, Priority.ALWAYS);
+        Label infoLabel = new Label(index.getEntryCount() + " имен в " + currentJar.getName());
+
+        // Поиск по индексу укладывается в доли миллисекунды - выполняется прямо на каждое нажатие
+        queryField.textProperty().addListener((obs, oldText, text) -> {
+            long startTime = System.nanoTime();
+            List<GoToIndex.Entry> found = index.find(text, 50);
+            long micros = (System.nanoTime() - startTime) / 1000;
+            resultList.getItems().setAll(found);
+            resultList.getSelectionModel().selectFirst();
+            resultList.scrollTo(0);
+            infoLabel.setText(text.isBlank() ? index.getEntryCount() + " имен в " + currentJar.getName()
+                    : "Найдено: " + found.size() + (found.size() == 50 ? "+" : "") + " (" + micros + " мкс)");
+        });
+
+        Runnable open = () -> {
+            GoToIndex.Entry entry = resultList.getSelectionModel().getSelectedItem();
+            if (entry != null) {
+                paletteStage.close();
+                decompileClass(entry.classEntry);
+            }
+        };
+        resultList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        resultList.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+        queryField.setOnAction(e -> open.run());
+        // Стрелки двигают выбор в списке, не уводя фокус из поля ввода
+        queryField.addEventFilter(javafx.scene.input.KeyEvent.KEY_PRESSED, e -> {
+            int selected = resultList.getSelectionModel().getSelectedIndex();
+            if (e.getCode() == javafx.scene.input.KeyCode.DOWN && selected < resultList.getItems().size() - 1) {
+                resultList.getSelectionModel().select(selected + 1);
+                resultList.scrollTo(Math.max(0, selected - 5));
+                e.consume();
+            } else if (e.getCode() == javafx.scene.input.KeyCode.UP && selected > 0) {
+                resultList.getSelectionModel().select(selected - 1);
+                resultList.scrollTo(Math.max(0, selected - 7));
+                e.consume();
+            } else if (e.getCode() == javafx.scene.input.KeyCode.ESCAPE) {
+                paletteStage.close();
+                e.consume();
+            }
+        });
+
+        root.getChildren().addAll(queryField, resultList, infoLabel);
+        paletteStage.setScene(new Scene(root));
+        paletteStage.show();
+        queryField.requestFocus();
+    }
+
+    // ========== ДЕКОМПИЛЯЦИЯ МЕТОДА ==========
+
+    public void showMethodPicker() {
+        TreeItem<String> selected = fileTree.getSelectionModel().getSelectedItem();
+        String className = selected != null && selected.isLeaf() && selected.getValue().endsWith(".class")
+                ? selected.getValue() : currentClassEntry;
+        if (currentJar == null || className == null) {
+            showWarning("Выберите класс", "Выберите класс в списке слева");
+            return;
+        }
+
+        File jar = currentJar;
+        executor.submit(() -> {
+            try {
+                // Список методов - один проход ASM без кода, CFR не запускается
+                List<MethodSlicer.MethodInfo> methods = new ArrayList<>();
+                for (MethodSlicer.MethodInfo method : decompiler.listMethods(jar, className)) {
+                    if (method.hasCode() && !method.isSynthetic()) {
+                        methods.add(method);
+                    }
+                }
+                Platform.runLater(() -> openMethodPicker(className, methods));
+            } catch (Exception e) {
+                System.err.println("❌ Ошибка чтения методов " + className + ":");
+                e.printStackTrace();
+                showError("Ошибка", e.getMessage());
+            }
+        });
+    }
+
+    private void openMethodPicker(String className, List<MethodSlicer.MethodInfo> methods) {
+        Stage pickerStage = new Stage();
+        pickerStage.initModality(Modality.WINDOW_MODAL);
+        pickerStage.initOwner(primaryStage);
+        pickerStage.setTitle("Методы " + className.replace(".class", "").replace("/", "."));
+        pickerStage.setWidth(700);
+        pickerStage.setHeight(500);
+
+        VBox root = new VBox(10);
+        root.setPadding(UIStyles.PADDING_LARGE);
+        root.setStyle(UIStyles.getRootStyle());
+
+        TextField filterField = UIStyles.createSearchField();
+        filterField.setPromptText("Фильтр по имени метода...");
+        ListView<MethodSlicer.MethodInfo> methodList = new ListView<>();
+        methodList.getItems().setAll(methods);
+        VBox.setVgrow(methodList, Priority.ALWAYS);
+
+        filterField.textProperty().addListener((obs, oldText, text) -> {
+            String filter = text.trim().toLowerCase();
+            List<MethodSlicer.MethodInfo> filtered = new ArrayList<>();
+            for (MethodSlicer.MethodInfo method : methods) {
+                if (method.name.toLowerCase().contains(filter)) {
+                    filtered.add(method);
+                }
+            }
+            methodList.getItems().setAll(filtered);
+            methodList.getSelectionModel().selectFirst();
+        });
+
+        Runnable open = () -> {
+            MethodSlicer.MethodInfo method = methodList.getSelectionModel().getSelectedItem();
+            if (method != null) {
+                pickerStage.close();
+                decompileMethod(className, method);
+            }
+        };
+        methodList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        methodList.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+        filterField.setOnAction(e -> open.run());
+
+        Button openBtn = UIStyles.createButton("🧩 Декомпилировать метод");
+        openBtn.setOnAction(e -> open.run());
+        Button cancelBtn = UIStyles.createSmallButton("Отмена");
+        cancelBtn.setOnAction(e -> pickerStage.close());
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.getChildren().addAll(cancelBtn, openBtn);
+
+        root.getChildren().addAll(filterField, methodList, buttonBox);
+        pickerStage.setScene(new Scene(root));
+        methodList.getSelectionModel().selectFirst();
+        pickerStage.show();
+        filterField.requestFocus();
+    }
+
+    // Декомпилируется урезанный класс: поля + выбранный метод, результат кэшируется по методу
+    public void decompileMethod(String className, MethodSlicer.MethodInfo method) {
+        currentClassName = className.replace(".class", "").replace("/", ".");
+        currentClassEntry = className;
+        updateStatus("Декомпиляция метода " + method.name + "...");
+        showProgress(true);
+
+        long generation = decompileGeneration.incrementAndGet();
+        if (pendingDecompile != null) {
+            pendingDecompile.cancel(true);
+        }
+
+        File jar = currentJar;
+        String displayName = currentClassName + "." + method.name;
+        pendingDecompile = executor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                String code;
+                String status;
+                try {
+                    code = decompiler.decompileMethodWithTimeout(jar, className, method.name, method.descriptor,
+                            Decompiler.DEFAULT_TIMEOUT_MS);
+                    status = "🧩 Метод: " + displayName + " (" + (System.currentTimeMillis() - start) + " мс)";
+                } catch (Decompiler.DecompilationException e) {
+                    code = "// " + e.getMessage();
+                    status = "⚠️ Не удалось декомпилировать: " + displayName;
+                } catch (TimeoutException e) {
+                    code = "// Декомпиляция метода не уложилась в " + Decompiler.DEFAULT_TIMEOUT_MS + " мс.\n" +
+                            "// Код метода можно посмотреть кнопкой \"📜 Байткод\".\n";
+                    status = "⏱ Превышен лимит: " + displayName;
+                }
+
+                // В урезанном классе нет остальных методов - собирать из него патч нельзя
+                streamIntoEditor(generation, splitIntoChunks(code, EDITOR_CHUNK_CHARS), false, status);
+            } catch (InterruptedException | CancellationException e) {
+                System.out.println("⏭ Декомпиляция метода " + displayName + " отменена более новым запросом");
+            } catch (Exception e) {
+                if (generation != decompileGeneration.get()) {
+                    return;
+                }
+                System.err.println("❌ Ошибка при декомпиляции метода " + displayName + ":");
                 e.printStackTrace();
                 Platform.runLater(() -> {
                     showProgress(false);
@@ -503,22 +958,126 @@ public class IDE extends Application {
         });
     }
 
-    public void compileAndPack() {
+    public void exportSources() {
         if (currentJar == null) {
             showWarning("Нет плагина", "Сначала откройте плагин");
             return;
         }
 
-        if (currentClassName == null) {
-            showWarning("Нет класса", "Сначала декомпилируйте класс");
+        // Повторное нажатие во время экспорта - отмена
+        SourceExporter running = activeExport;
+        if (running != null) {
+            Alert confirm = UIStyles.createConfirmAlert("Экспорт", "Отменить экспорт?",
+                    "Уже сохраненные файлы останутся на диске.");
+            Optional<ButtonType> answer = confirm.showAndWait();
+            if (answer.isPresent() && answer.get() == ButtonType.OK) {
+                running.cancel();
+                updateStatus("Отмена экспорта...");
+            }
             return;
         }
 
-        String modifiedCode = codeArea.getText();
-        if (modifiedCode.isEmpty()) {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Папка для исходников");
+        File parent = currentJar.getParentFile();
+        if (parent != null && parent.isDirectory()) {
+            chooser.setInitialDirectory(parent);
+        }
+
+        File dir = chooser.showDialog(primaryStage);
+        if (dir == null) {
+            return;
+        }
+
+        File outputDir = new File(dir, currentJar.getName().replace(".jar", "") + "_src");
+        File jar = currentJar;
+        SourceExporter exporter = new SourceExporter(decompiler);
+        activeExport = exporter;
+
+        updateStatus("Экспорт исходников...");
+        setProgress(0);
+
+        // Отдельный поток: экспорт долгий и не должен занимать общий executor
+        Thread exportThread = new Thread(() -> {
+            try {
+                SourceExporter.ExportReport report = exporter.export(jar, outputDir, (done, total, cls) -> {
+                    if (done % 20 == 0 || done == total) {
+                        setProgress((double) done / total);
+                        updateStatus("Экспорт: " + done + " / " + total);
+                    }
+                });
+
+                Platform.runLater(() -> {
+                    showProgress(false);
+                    updateStatus(report.cancelled ? "Экспорт отменен" : "✅ Экспорт завершен");
+                    showInfo("Экспорт исходников",
+                            (report.cancelled ? "⏹ Экспорт отменен\n" : "✅ Экспорт завершен\n") +
+                                    "📁 Файлов: " + report.getExported() + " из " + report.total + "\n" +
+                                    "❌ Ошибок: " + report.failures.size() + "\n" +
+                                    "⚠️ Частично: " + report.partial.size() + "\n" +
+                                    "⏱ Время: " + report.millis / 1000.0 + " с\n" +
+                                    "📍 Папка: " + report.outputDir.getAbsolutePath());
+                });
+            } catch (Exception e) {
+                System.err.println("❌ Ошибка экспорта:");
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    showProgress(false);
+                    showError("Ошибка экспорта", e.getMessage());
+                });
+            } finally {
+                activeExport = null;
+            }
+        }, "bytecraft-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
+    // Отложить правку текущего класса: патч из нескольких классов собирается одним JAR
+    public void addCurrentClassToPatch() {
+        if (currentJar == null || currentClassName == null) {
+            showWarning("Нет класса", "Сначала декомпилируйте класс");
+            return;
+        }
+        if (!sourceView) {
+            showWarning("Нет исходника", "В редакторе не исходный код класса (листинг или сводка).\n" +
+                    "Декомпилируйте класс целиком, чтобы добавить его в патч.");
+            return;
+        }
+        String code = codeArea.getText();
+        if (code.isBlank()) {
             showWarning("Нет кода", "Нет кода для компиляции");
             return;
         }
+        pendingPatch.put(currentClassName, code);
+        System.out.println("➕ В патч: " + currentClassName + " (всего " + pendingPatch.size() + ")");
+        updateStatus("➕ В патче классов: " + pendingPatch.size() + " (" + String.join(", ", pendingPatch.keySet()) + ")");
+    }
+
+    public void compileAndPack() {
+        if (currentJar == null) {
+            showWarning("Нет плагина", "Сначала откройте плагин");
+            return;
+        }
+
+        // Текущий класс входит в патч, если в редакторе его исходник; отложенные правки - всегда
+        PatchSet patch = new PatchSet(currentJar);
+        synchronized (pendingPatch) {
+            pendingPatch.forEach(patch::addClass);
+        }
+        if (currentClassName != null && sourceView && !codeArea.getText().isBlank()) {
+            patch.addClass(currentClassName, codeArea.getText());
+        }
+
+        if (patch.isEmpty()) {
+            if (currentClassName == null) {
+                showWarning("Нет класса", "Сначала декомпилируйте класс");
+            } else {
+                showWarning("Нет исходника", "В редакторе не исходный код класса (листинг или сводка).\n" +
+                        "Декомпилируйте класс целиком, чтобы собрать патч.");
+            }
+            return;
+        }
 
         if (!javaCompiler.isCompilerAvailable()) {
             showError("Нет компилятора",
@@ -530,8 +1089,10 @@ public class IDE extends Application {
         }
 
         // Подтверждение
+        Set<String> patchedClasses = patch.getSources().keySet();
         Alert confirm = UIStyles.createConfirmAlert("Подтверждение", "Собрать патч?",
-                "Класс: " + currentClassName + "\nБудет создан новый JAR файл рядом с оригиналом.");
+                (patchedClasses.size() == 1 ? "Класс: " : "Классы (" + patchedClasses.size() + "):\n") +
+                        String.join("\n", patchedClasses) + "\nБудет создан новый JAR файл рядом с оригиналом.");
 
         Optional<ButtonType> result = confirm.showAndWait();
         if (result.isEmpty() || result.get() != ButtonType.OK) {
@@ -543,13 +1104,12 @@ public class IDE extends Application {
 
         executor.submit(() -> {
             try {
-                System.out.println("⚡ Начало компиляции класса: " + currentClassName);
-                System.out.println("📝 Размер кода: " + modifiedCode.length() + " символов");
+                System.out.println("⚡ Начало компиляции патча: " + patch);
 
-                // Создаем пропатченный JAR
-                File patchedJar = patcher.createPatchedJarFromModifiedClass(
-                        currentJar, currentClassName, modifiedCode
-                );
+                // Создаем пропатченный JAR: все классы набора за одну компиляцию и один проход по JAR
+                File patchedJar = patcher.applyPatchSet(patch);
+                // Собранные правки больше не отложены (если их не поменяли за время сборки)
+                patch.getSources().forEach(pendingPatch::remove);
 
                 System.out.println("✅ Пропатченный JAR создан: " + patchedJar.getAbsolutePath());
                 System.out.println("📁 Размер нового JAR: " + patchedJar.length() + " байт");
@@ -667,6 +1227,13 @@ public class IDE extends Application {
         });
     }
 
+    void setProgress(double value) {
+        Platform.runLater(() -> {
+            progressBar.setVisible(true);
+            progressBar.setProgress(value);
+        });
+    }
+
     // ИЗМЕНЕНО: убрали модификатор private
     void showError(String title, String message) {
         Platform.runLater(() -> {
@@ -704,10 +1271,23 @@ public class IDE extends Application {
         return currentJar;
     }
 
+    // Запись открытого класса в JAR ("a/b/C.class"), null - класс не открыт
+    public String getCurrentClassEntry() {
+        return currentClassEntry;
+    }
+
     public TextArea getCodeArea() {
         return codeArea;
     }
 
+    // Только из FX-потока: таблица соответствует текущему тексту редактора
+    public LineIndex getLineIndex() {
+        if (lineIndex == null) {
+            lineIndex = LineIndex.of(codeArea.getText());
+        }
+        return lineIndex;
+    }
+
     public ExecutorService getExecutor() {
         return executor;
     }
@@ -739,6 +1319,7 @@ public class IDE extends Application {
     public void stop() {
         System.out.println("🛑 Остановка приложения...");
         executor.shutdown();
+        decompiler.closeSession();
         System.out.println("👋 ByteCraft завершил работу");
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package su.bytecraft.ide;
+
+import java.util.Arrays;
+
+// Таблица начал строк документа: смещение -> строка/колонка и обратно двоичным поиском.
+// Строится один раз на текст за один проход; строки и колонки считаются с 1, как в редакторе.
+public class LineIndex {
+
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int length;
+
+    private LineIndex(int[] lineStarts, int lineCount, int length) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.length = length;
+    }
+
+    public static LineIndex of(CharSequence text) {
+        int[] starts = new int[64];
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return new LineIndex(starts, count, text.length());
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int lineOf(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, lineCount, Math.max(0, Math.min(offset, length)));
+        // Не точное попадание: insertion point - 1 = строка, в которой лежит смещение
+        return (index >= 0 ? index : -index - 2) + 1;
+    }
+
+    public int columnOf(int offset) {
+        return offset - lineStarts[lineOf(offset) - 1] + 1;
+    }
+
+    // Смещение начала строки (строки вне документа прижимаются к границам)
+    public int offsetOf(int line) {
+        return lineStarts[Math.max(1, Math.min(line, lineCount)) - 1];
+    }
+
+    // Смещение конца строки, без перевода строки
+    public int endOf(int line) {
+        int clamped = Math.max(1, Math.min(line, lineCount));
+        return clamped < lineCount ? lineStarts[clamped] - 1 : length;
+    }
+}
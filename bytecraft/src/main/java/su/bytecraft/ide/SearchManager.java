@@ -1,7 +1,13 @@
 package su.bytecraft.ide;
 
 import javafx.geometry.Pos;
+import su.bytecraft.BytecodeSearchIndex;
+import su.bytecraft.ClassHierarchyIndex;
+import su.bytecraft.CrossReferenceIndex;
 import su.bytecraft.Decompiler;
+import su.bytecraft.StructuralSearch;
+import su.bytecraft.TrigramIndex;
+import su.bytecraft.WorkspaceIndex;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
@@ -9,12 +15,21 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -28,6 +43,32 @@ public class SearchManager {
     private int currentSearchIndex = -1;
     private String lastSearchText = "";
 
+    // Индекс байткода открытого плагина (строится при первом глобальном поиске)
+    private volatile BytecodeSearchIndex searchIndex;
+
+    // Индекс перекрестных ссылок (строится при первом запросе использований)
+    private volatile CrossReferenceIndex referenceIndex;
+    // Иерархия типов плагина и API (строится при первом запросе)
+    private volatile ClassHierarchyIndex hierarchyIndex;
+    // Папка плагинов: индексы JAR живут между поисками, меняются только обновленные файлы
+    private volatile WorkspaceIndex workspaceIndex;
+
+    // Триграммный индекс декомпилированных исходников (строится в фоне при открытии плагина)
+    private volatile TrigramIndex sourceIndex;
+
+    // Текущий глобальный поиск (его окно результатов) и пул для поиска по классам
+    private volatile GlobalSearchView activeSearch;
+    private final ExecutorService searchPool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "bytecraft-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Отключение фоновой индексации исходников: -Dbytecraft.sourceIndex=false
+    private static final boolean SOURCE_INDEX_ENABLED =
+            Boolean.parseBoolean(System.getProperty("bytecraft.sourceIndex", "true"));
+
     public SearchManager(IDE ide, Decompiler decompiler) {
         this.ide = ide;
         this.decompiler = decompiler;
@@ -72,16 +113,13 @@ public class SearchManager {
             final List<SearchResult.TextPosition> foundResults = new ArrayList<>();
             int count = 0;
 
+            // Таблица строк документа общая с редактором и строится один раз на текст
+            LineIndex lines = ide.getLineIndex();
             while (matcher.find()) {
                 int start = matcher.start();
                 int end = matcher.end();
 
-                // Вычисляем строку и колонку
-                String before = text.substring(0, start);
-                int line = before.split("\n", -1).length;
-                int column = start - before.lastIndexOf('\n');
-
-                foundResults.add(new SearchResult.TextPosition(start, end, line, column));
+                foundResults.add(new SearchResult.TextPosition(start, end, lines.lineOf(start), lines.columnOf(start)));
                 count++;
             }
 
@@ -135,6 +173,18 @@ public class SearchManager {
     }
 
     private void performGlobalSearch(String searchText, boolean caseSensitive, boolean useRegex) {
+        performGlobalSearch(searchText, caseSensitive, useRegex, EnumSet.allOf(BytecodeSearchIndex.Kind.class));
+    }
+
+    // Поиск типа по всем классам - замена поиску по строкам import в декомпилированном коде
+    public void performTypeSearch(String typeName, boolean caseSensitive) {
+        lastSearchText = typeName;
+        performGlobalSearch(typeName, caseSensitive, false, EnumSet.of(BytecodeSearchIndex.Kind.TYPE_REF));
+    }
+
+    // Глобальный поиск отвечает индекс байткода по всем классам; CFR нужен только для предпросмотра
+    private void performGlobalSearch(String searchText, boolean caseSensitive, boolean useRegex,
+                                     Set<BytecodeSearchIndex.Kind> kinds) {
         File currentJar = ide.getCurrentJar();
         if (currentJar == null) {
             // Используем метод IDE напрямую
@@ -142,6 +192,23 @@ public class SearchManager {
             return;
         }
 
+        Pattern pattern;
+        try {
+            pattern = buildPattern(searchText, caseSensitive, false, useRegex);
+        } catch (PatternSyntaxException e) {
+            ide.showError("Ошибка регулярного выражения",
+                    "Некорректное регулярное выражение: " + e.getMessage());
+            return;
+        }
+
+        // Новый глобальный поиск останавливает предыдущий
+        GlobalSearchView previous = activeSearch;
+        if (previous != null) {
+            previous.cancel();
+        }
+        GlobalSearchView view = openResultsDialog(searchText, pattern);
+        activeSearch = view;
+
         ide.updateStatus("Поиск во всех классах...");
         ide.showProgress(true);
 
@@ -150,82 +217,50 @@ public class SearchManager {
                 System.out.println("🔍 Глобальный поиск: '" + searchText + "'");
                 System.out.println("   Регистр: " + caseSensitive + ", Регулярка: " + useRegex);
 
-                // Получаем список всех классов
-                List<String> allClasses = decompiler.getClassesFromJar(currentJar);
-                System.out.println("   Всего классов для поиска: " + allClasses.size());
-
-                List<SearchResult> results = new ArrayList<>();
-                int totalMatches = 0;
-
-                // Ограничиваем количество проверяемых классов для скорости
-                int maxClassesToCheck = 100;
-                int checkedCount = 0;
-
-                for (String className : allClasses) {
-                    if (checkedCount >= maxClassesToCheck) {
-                        System.out.println("   ⚠️  Достигнут лимит в " + maxClassesToCheck + " классов");
-                        break;
+                int checkedCount;
+                long startTime = System.nanoTime();
+
+                TrigramIndex sources = sourceIndex;
+                if (useRegex && kinds.size() == BytecodeSearchIndex.Kind.values().length &&
+                        sources != null && sources.isFor(currentJar) && sources.isReady()) {
+                    // Регулярка по форме кода - по исходникам, сужено триграммами
+                    List<String> candidates = sources.candidateClasses(pattern);
+                    System.out.println("   🔤 По исходникам: кандидатов " + candidates.size() +
+                            " из " + sources.getClassCount());
+                    if (!sources.getSkipped().isEmpty()) {
+                        System.out.println("   ⚠️  Не проиндексированы (не ищутся): " + sources.getSkipped().keySet());
                     }
-
-                    try {
-                        // Декомпилируем каждый класс
-                        String code = decompiler.decompileClassFromJar(currentJar, className);
-                        checkedCount++;
-
-                        // Ищем совпадения
-                        Pattern pattern = buildPattern(searchText, caseSensitive, false, useRegex);
-                        java.util.regex.Matcher matcher = pattern.matcher(code);
-                        List<SearchResult.TextPosition> matches = new ArrayList<>();
-
-                        while (matcher.find()) {
-                            int start = matcher.start();
-                            int end = matcher.end();
-
-                            String before = code.substring(0, start);
-                            int line = before.split("\n", -1).length;
-                            int column = start - before.lastIndexOf('\n');
-
-                            matches.add(new SearchResult.TextPosition(start, end, line, column));
-                        }
-
-                        if (!matches.isEmpty()) {
-                            String displayName = className.replace(".class", "").replace("/", ".");
-                            results.add(new SearchResult(displayName, className, matches));
-                            totalMatches += matches.size();
-
-                            System.out.println("   ✅ " + displayName + " - найдено: " + matches.size());
+                    searchSourcesInParallel(sources, candidates, pattern, view);
+                    checkedCount = sources.getClassCount();
+                } else {
+                    if (useRegex && sources != null && sources.isFor(currentJar)) {
+                        System.out.println("   ⏳ Индекс исходников еще строится (" + sources.getProgressPercent() +
+                                "%), поиск по байткоду");
+                    }
+                    BytecodeSearchIndex index = getSearchIndex(currentJar, (done, total) -> {
+                        ide.setProgress((double) done / total);
+                        ide.updateStatus("Индексация байткода: " + done + " / " + total);
+                    });
+                    Map<String, List<BytecodeSearchIndex.Hit>> found = index.search(pattern, kinds);
+                    for (Map.Entry<String, List<BytecodeSearchIndex.Hit>> entry : found.entrySet()) {
+                        if (view.isCancelled()) {
+                            break;
                         }
-
-                    } catch (Exception e) {
-                        System.err.println("   ⚠️  Ошибка при декомпиляции " + className + ": " + e.getMessage());
+                        String className = entry.getKey();
+                        String displayName = className.replace(".class", "").replace("/", ".");
+                        view.publish(new SearchResult(displayName, className, new ArrayList<>(), entry.getValue()));
                     }
+                    checkedCount = index.getClassCount();
                 }
+                System.out.println("   ✅ Найдено в " + view.getClassCount() + " классах из " + checkedCount +
+                        " за " + (System.nanoTime() - startTime) / 1_000_000 + " мс" +
+                        (view.isCancelled() ? " (остановлен)" : ""));
 
-                final List<SearchResult> finalResults = new ArrayList<>(results);
-                final int finalTotalMatches = totalMatches;
-                final int finalCheckedCount = checkedCount;
-
-                Platform.runLater(() -> {
-                    ide.showProgress(false);
-
-                    if (finalResults.isEmpty()) {
-                        ide.setSearchResultLabel("Совпадений не найдено");
-                        // Используем метод IDE напрямую
-                        ide.showInfo("Глобальный поиск",
-                                "Совпадений не найдено в " + finalCheckedCount + " классах");
-                    } else {
-                        ide.setSearchResultLabel("Найдено в " + finalResults.size() +
-                                " классах: " + finalTotalMatches + " совпадений");
-                        showSearchResultsDialog(finalResults, searchText,
-                                finalTotalMatches, finalCheckedCount);
-                    }
-
-                    ide.updateStatus("Готов");
-                });
-
+                view.finish(checkedCount);
             } catch (Exception e) {
                 System.err.println("❌ Ошибка при глобальном поиске:");
                 e.printStackTrace();
+                view.finish(0);
                 Platform.runLater(() -> {
                     ide.showProgress(false);
                     // Используем метод IDE напрямую
@@ -236,6 +271,81 @@ public class SearchManager {
         });
     }
 
+    // По классу на задачу, параллельность ограничена числом ядер; отмена проверяется перед каждым классом
+    private void searchSourcesInParallel(TrigramIndex sources, List<String> candidates, Pattern pattern,
+                                         GlobalSearchView view) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(candidates.size());
+        for (String className : candidates) {
+            futures.add(searchPool.submit(() -> {
+                if (view.isCancelled()) {
+                    return;
+                }
+                String code = sources.getSource(className);
+                if (code == null) {
+                    return;
+                }
+                List<SearchResult.TextPosition> matches = findMatches(pattern, code);
+                if (!matches.isEmpty()) {
+                    String displayName = className.replace(".class", "").replace("/", ".");
+                    view.publish(new SearchResult(displayName, className, matches));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                System.err.println("   ⚠️  Ошибка поиска в классе: " + e.getCause());
+            }
+        }
+    }
+
+    // Новый плагин - новый индекс исходников; старый останавливаем
+    public void startSourceIndexing(File jarFile) {
+        TrigramIndex previous = sourceIndex;
+        if (previous != null) {
+            previous.cancel();
+        }
+        sourceIndex = SOURCE_INDEX_ENABLED ? TrigramIndex.buildInBackground(decompiler, jarFile, null) : null;
+    }
+
+    private static List<SearchResult.TextPosition> findMatches(Pattern pattern, String code) {
+        List<SearchResult.TextPosition> matches = new ArrayList<>();
+        java.util.regex.Matcher matcher = pattern.matcher(code);
+        LineIndex lines = null;
+        while (matcher.find()) {
+            if (lines == null) {
+                // Таблица строк нужна только классам с совпадениями
+                lines = LineIndex.of(code);
+            }
+            int start = matcher.start();
+            matches.add(new SearchResult.TextPosition(start, matcher.end(), lines.lineOf(start), lines.columnOf(start)));
+        }
+        return matches;
+    }
+
+    // Индекс с диска открывается мгновенно; индексируются только изменившиеся классы
+    private synchronized BytecodeSearchIndex getSearchIndex(File jarFile, BytecodeSearchIndex.ProgressListener listener)
+            throws java.io.IOException {
+        BytecodeSearchIndex index = searchIndex;
+        if (index == null || !index.isFor(jarFile)) {
+            index = BytecodeSearchIndex.open(jarFile, listener);
+            searchIndex = index;
+        }
+        return index;
+    }
+
+    // При открытии плагина: к первому поиску индекс уже готов
+    public void preloadSearchIndex(File jarFile) {
+        ide.getExecutor().submit(() -> {
+            try {
+                getSearchIndex(jarFile, null);
+            } catch (Exception e) {
+                System.err.println("⚠️  Индекс байткода не подготовлен: " + e.getMessage());
+            }
+        });
+    }
+
     public void navigateToPrevMatch() {
         if (searchResults.isEmpty()) return;
 
@@ -263,17 +373,17 @@ public class SearchManager {
 
         SearchResult.TextPosition pos = searchResults.get(currentSearchIndex);
 
-        // Выделяем текст
-        ide.getCodeArea().selectRange(pos.start, pos.end);
+        // Выделяем текст (якорь в конце - каретка и прокрутка встают на начало совпадения)
+        ide.getCodeArea().selectRange(pos.end, pos.start);
         ide.getCodeArea().requestFocus();
 
         // Обновляем информацию
         ide.setSearchResultLabel("Совпадение " + (currentSearchIndex + 1) + " из " +
-                searchResults.size() + " (строка " + pos.line + ")");
+                searchResults.size() + " (строка " + pos.line + ":" + pos.column + ")");
     }
 
-    private void showSearchResultsDialog(List<SearchResult> results, String searchText,
-                                         int totalMatches, int checkedClasses) {
+    // Окно открывается сразу, результаты добавляются по мере нахождения
+    private GlobalSearchView openResultsDialog(String searchText, Pattern pattern) {
         Stage resultsStage = new Stage();
         resultsStage.initModality(Modality.WINDOW_MODAL);
         resultsStage.initOwner(ide.getPrimaryStage());
@@ -285,12 +395,23 @@ public class SearchManager {
         root.setPadding(new Insets(15));
         root.setStyle(UIStyles.getRootStyle());
 
-        Label summaryLabel = new Label("🔍 Найдено " + totalMatches + " совпадений в " +
-                results.size() + " классах (проверено " + checkedClasses + ")");
+        Label summaryLabel = new Label("🔍 Поиск...");
         summaryLabel.setStyle(UIStyles.getSearchResultStyle());
 
+        Button stopBtn = UIStyles.createSmallButton("⏹ Остановить");
+        HBox summaryBox = new HBox(10);
+        summaryBox.setAlignment(Pos.CENTER_LEFT);
+        Region summarySpacer = new Region();
+        HBox.setHgrow(summarySpacer, Priority.ALWAYS);
+        summaryBox.getChildren().addAll(summaryLabel, summarySpacer, stopBtn);
+
+        GlobalSearchView view = new GlobalSearchView(summaryLabel, stopBtn);
+        stopBtn.setOnAction(e -> view.cancel());
+        // Закрытое окно - поиск больше никому не нужен
+        resultsStage.setOnHidden(e -> view.cancel());
+
         ListView<SearchResult> resultsList = new ListView<>();
-        resultsList.setItems(FXCollections.observableArrayList(results));
+        resultsList.setItems(view.items);
         resultsList.setCellFactory(lv -> new ListCell<SearchResult>() {
             @Override
             protected void updateItem(SearchResult item, boolean empty) {
@@ -312,40 +433,60 @@ public class SearchManager {
         previewArea.setPrefHeight(200);
 
         resultsList.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal != null) {
+            if (newVal == null) {
+                return;
+            }
+            previewArea.setText(describeHits(newVal) + "// Декомпиляция для предпросмотра...");
+            File jar = ide.getCurrentJar();
+            ide.getExecutor().submit(() -> {
+                String text;
+                int firstLine = -1;
                 try {
                     // Декомпилируем выбранный класс для предпросмотра
-                    String code = decompiler.decompileClassFromJar(ide.getCurrentJar(),
-                            newVal.getOriginalClassName());
-
-                    // Подсвечиваем найденные места
-                    StringBuilder highlighted = new StringBuilder();
-                    String[] lines = code.split("\n");
-
-                    // Находим строки с совпадениями
-                    Set<Integer> highlightLines = new HashSet<>();
-                    for (SearchResult.TextPosition pos : newVal.getMatches()) {
-                        highlightLines.add(pos.line);
+                    String code = decompiler.decompileClassFromJar(jar, newVal.getOriginalClassName());
+                    LineIndex codeLines = LineIndex.of(code);
+
+                    // Строки с совпадениями - одним проходом по всему тексту (в исходнике текст
+                    // может выглядеть иначе, чем в байткоде, поэтому ищем заново)
+                    BitSet highlightLines = new BitSet();
+                    java.util.regex.Matcher matcher = pattern.matcher(code);
+                    while (matcher.find()) {
+                        highlightLines.set(codeLines.lineOf(matcher.start()),
+                                codeLines.lineOf(Math.max(matcher.start(), matcher.end() - 1)) + 1);
                     }
 
-                    for (int i = 0; i < lines.length; i++) {
-                        if (highlightLines.contains(i + 1)) {
+                    String header = describeHits(newVal);
+                    StringBuilder highlighted = new StringBuilder(code.length() + header.length() +
+                            highlightLines.cardinality() * 4).append(header);
+                    int headerLines = LineIndex.of(header).getLineCount() - 1;
+                    for (int line = 1; line <= codeLines.getLineCount(); line++) {
+                        if (highlightLines.get(line)) {
                             highlighted.append(">>> ");
+                            if (firstLine < 0) {
+                                firstLine = headerLines + line;
+                            }
                         }
-                        highlighted.append(lines[i]).append("\n");
-                    }
-
-                    previewArea.setText(highlighted.toString());
-
-                    // Прокручиваем к первому совпадению
-                    if (!newVal.getMatches().isEmpty()) {
-                        int firstLine = newVal.getMatches().get(0).line;
-                        previewArea.setScrollTop(firstLine * 16); // Примерная высота строки
+                        highlighted.append(code, codeLines.offsetOf(line), codeLines.endOf(line)).append("\n");
                     }
+                    text = highlighted.toString();
                 } catch (Exception e) {
-                    previewArea.setText("Ошибка загрузки класса: " + e.getMessage());
+                    text = "Ошибка загрузки класса: " + e.getMessage();
                 }
-            }
+
+                String finalText = text;
+                int finalFirstLine = firstLine;
+                Platform.runLater(() -> {
+                    if (resultsList.getSelectionModel().getSelectedItem() != newVal) {
+                        return;
+                    }
+                    previewArea.setText(finalText);
+                    // Прокручиваем к первому совпадению: выделение строки, TextArea сама доскроллит до него
+                    if (finalFirstLine > 0) {
+                        LineIndex previewLines = LineIndex.of(finalText);
+                        previewArea.selectRange(previewLines.endOf(finalFirstLine), previewLines.offsetOf(finalFirstLine));
+                    }
+                });
+            });
         });
 
         // Кнопки
@@ -380,12 +521,608 @@ public class SearchManager {
         VBox previewBox = new VBox(5);
         previewBox.getChildren().addAll(UIStyles.createLabel("Предпросмотр:"), previewArea);
 
-        root.getChildren().addAll(summaryLabel, resultsList, previewBox, buttonBox);
+        root.getChildren().addAll(summaryBox, resultsList, previewBox, buttonBox);
         VBox.setVgrow(resultsList, Priority.ALWAYS);
 
         Scene scene = new Scene(root);
         resultsStage.setScene(scene);
         resultsStage.show();
+        return view;
+    }
+
+    private static String describeHits(SearchResult result) {
+        if (result.getHits().isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("// Найдено в байткоде:\n");
+        for (BytecodeSearchIndex.Hit hit : result.getHits()) {
+            sb.append("//   ").append(hit).append("\n");
+        }
+        return sb.append("\n").toString();
+    }
+
+    // Состояние одного глобального поиска: результаты из потоков поиска копятся в очереди
+    // и переносятся в список окна пачками, не чаще одного runLater за раз
+    private class GlobalSearchView {
+        final javafx.collections.ObservableList<SearchResult> items = FXCollections.observableArrayList();
+        private final Label summaryLabel;
+        private final Button stopBtn;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final ConcurrentLinkedQueue<SearchResult> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final AtomicInteger classCount = new AtomicInteger();
+        private final AtomicInteger matchCount = new AtomicInteger();
+
+        GlobalSearchView(Label summaryLabel, Button stopBtn) {
+            this.summaryLabel = summaryLabel;
+            this.stopBtn = stopBtn;
+        }
+
+        boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        int getClassCount() {
+            return classCount.get();
+        }
+
+        void publish(SearchResult result) {
+            classCount.incrementAndGet();
+            matchCount.addAndGet(result.getMatchCount());
+            pending.add(result);
+            if (drainScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::drain);
+            }
+        }
+
+        private void drain() {
+            drainScheduled.set(false);
+            List<SearchResult> batch = new ArrayList<>();
+            SearchResult result;
+            while ((result = pending.poll()) != null) {
+                batch.add(result);
+            }
+            items.addAll(batch);
+            summaryLabel.setText("🔍 Найдено " + matchCount.get() + " совпадений в " + items.size() +
+                    " классах, поиск продолжается...");
+        }
+
+        void finish(int checkedClasses) {
+            Platform.runLater(() -> {
+                drain();
+                stopBtn.setDisable(true);
+                String summary = items.isEmpty() ? "Совпадений не найдено" :
+                        "Найдено " + matchCount.get() + " совпадений в " + items.size() + " классах";
+                summaryLabel.setText("🔍 " + summary + " (проверено " + checkedClasses + ")" +
+                        (cancelled.get() ? " - поиск остановлен" : ""));
+                if (activeSearch == this) {
+                    ide.showProgress(false);
+                    ide.setSearchResultLabel(summary);
+                    ide.updateStatus("Готов");
+                }
+            });
+        }
+    }
+
+    // ========== СТРУКТУРНЫЙ ПОИСК ==========
+
+    public void showStructuralSearch(String initialPattern) {
+        File currentJar = ide.getCurrentJar();
+        if (currentJar == null) {
+            ide.showWarning("Нет плагина", "Сначала откройте плагин");
+            return;
+        }
+
+        Stage structuralStage = new Stage();
+        structuralStage.initOwner(ide.getPrimaryStage());
+        structuralStage.setTitle("Структурный поиск: " + currentJar.getName());
+        structuralStage.setWidth(850);
+        structuralStage.setHeight(620);
+
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(15));
+        root.setStyle(UIStyles.getRootStyle());
+
+        TextArea patternArea = UIStyles.createTextArea();
+        patternArea.setPrefHeight(110);
+        patternArea.setText(initialPattern);
+        patternArea.setPromptText("Шаг на строку, ... - любые инструкции между шагами. Например:\n" +
+                "@loop\ncall Bukkit.getScheduler\n...\ncall *.runTask*");
+
+        Label hintLabel = new Label("call Owner.name · new Type · get/put Owner.field · ldc \"text\" · " +
+                "<опкод> [операнд] · any · ... · @loop · @method name   (* и ? - маски)");
+        hintLabel.setStyle(UIStyles.getSearchResultStyle());
+        hintLabel.setWrapText(true);
+
+        ListView<StructuralSearch.Match> resultList = new ListView<>();
+        Label summaryLabel = new Label();
+        summaryLabel.setStyle(UIStyles.getSearchResultStyle());
+
+        StructuralSearch[] running = new StructuralSearch[1];
+        Button searchBtn = UIStyles.createButton("🧱 Искать");
+        searchBtn.setOnAction(e -> {
+            StructuralSearch search;
+            try {
+                search = StructuralSearch.compile(patternArea.getText());
+            } catch (IllegalArgumentException ex) {
+                ide.showError("Ошибка в шаблоне", ex.getMessage());
+                return;
+            }
+            if (running[0] != null) {
+                running[0].cancel();
+            }
+            running[0] = search;
+            resultList.getItems().clear();
+            summaryLabel.setText("Поиск...");
+            searchBtn.setDisable(true);
+
+            ide.getExecutor().submit(() -> {
+                try {
+                    List<StructuralSearch.Match> matches = search.search(currentJar,
+                            (done, total) -> ide.setProgress((double) done / total));
+                    Platform.runLater(() -> {
+                        ide.showProgress(false);
+                        searchBtn.setDisable(false);
+                        if (running[0] == search) {
+                            resultList.getItems().setAll(matches);
+                            summaryLabel.setText(matches.isEmpty() ? "Ничего не найдено"
+                                    : "🧱 Совпадений: " + matches.size());
+                        }
+                    });
+                } catch (Exception ex) {
+                    System.err.println("❌ Ошибка структурного поиска:");
+                    ex.printStackTrace();
+                    Platform.runLater(() -> {
+                        ide.showProgress(false);
+                        searchBtn.setDisable(false);
+                        summaryLabel.setText("❌ " + ex.getMessage());
+                    });
+                }
+            });
+        });
+
+        Runnable open = () -> {
+            StructuralSearch.Match match = resultList.getSelectionModel().getSelectedItem();
+            if (match != null) {
+                ide.decompileClass(match.className);
+                ide.updateStatus("Метод " + match.methodName + (match.line > 0 ? ", строка " + match.line : ""));
+            }
+        };
+        resultList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        resultList.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+
+        Button closeBtn = UIStyles.createSmallButton("Закрыть");
+        closeBtn.setOnAction(e -> structuralStage.close());
+        structuralStage.setOnHidden(e -> {
+            if (running[0] != null) {
+                running[0].cancel();
+            }
+        });
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.getChildren().addAll(closeBtn, searchBtn);
+
+        root.getChildren().addAll(patternArea, hintLabel, buttonBox, summaryLabel, resultList);
+        VBox.setVgrow(resultList, Priority.ALWAYS);
+
+        structuralStage.setScene(new Scene(root));
+        structuralStage.show();
+        patternArea.requestFocus();
+    }
+
+    // ========== ПОИСК ПО ПАПКЕ ПЛАГИНОВ ==========
+
+    public void performWorkspaceSearch(String searchText, boolean caseSensitive, boolean useRegex,
+                                       boolean typesOnly) {
+        Pattern pattern;
+        try {
+            pattern = buildPattern(searchText, caseSensitive, false, useRegex);
+        } catch (PatternSyntaxException e) {
+            ide.showError("Ошибка регулярного выражения",
+                    "Некорректное регулярное выражение: " + e.getMessage());
+            return;
+        }
+
+        WorkspaceIndex previous = workspaceIndex;
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Папка с плагинами");
+        File initialDir = previous != null ? previous.getFolder()
+                : ide.getCurrentJar() != null ? ide.getCurrentJar().getParentFile() : null;
+        if (initialDir != null && initialDir.isDirectory()) {
+            chooser.setInitialDirectory(initialDir);
+        }
+        File folder = chooser.showDialog(ide.getPrimaryStage());
+        if (folder == null) {
+            return;
+        }
+
+        WorkspaceIndex index = previous != null && previous.getFolder().equals(folder.getAbsoluteFile())
+                ? previous : new WorkspaceIndex(folder);
+        workspaceIndex = index;
+        Set<BytecodeSearchIndex.Kind> kinds = typesOnly
+                ? EnumSet.of(BytecodeSearchIndex.Kind.TYPE_REF)
+                : EnumSet.allOf(BytecodeSearchIndex.Kind.class);
+
+        ide.updateStatus("Индексация папки " + folder.getName() + "...");
+        ide.showProgress(true);
+        ide.getExecutor().submit(() -> {
+            try {
+                WorkspaceIndex.RefreshReport report = index.refresh((done, total, jarName) -> {
+                    ide.setProgress((double) done / total);
+                    ide.updateStatus("Индексация папки: " + done + " / " + total + " (" + jarName + ")");
+                });
+                Map<File, Map<String, List<BytecodeSearchIndex.Hit>>> results = index.search(pattern, kinds);
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.updateStatus("✅ Папка: " + report.jarCount + " JAR, найдено в " + results.size());
+                    if (!report.failedJars.isEmpty()) {
+                        ide.showWarning("Не все JAR прочитаны",
+                                "Пропущены: " + String.join(", ", report.failedJars));
+                    }
+                    openWorkspaceResults(searchText, folder, results);
+                });
+            } catch (Exception e) {
+                System.err.println("❌ Ошибка поиска по папке:");
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.showError("Ошибка поиска по папке", e.getMessage());
+                });
+            }
+        });
+    }
+
+    private void openWorkspaceResults(String searchText, File folder,
+                                      Map<File, Map<String, List<BytecodeSearchIndex.Hit>>> results) {
+        Stage resultsStage = new Stage();
+        resultsStage.initOwner(ide.getPrimaryStage());
+        resultsStage.setTitle("Поиск в " + folder.getName() + ": " + searchText);
+        resultsStage.setWidth(850);
+        resultsStage.setHeight(600);
+
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(15));
+        root.setStyle(UIStyles.getRootStyle());
+
+        // JAR -> класс -> совпадения; открыть можно класс или конкретное совпадение
+        TreeItem<WorkspaceNode> rootItem = new TreeItem<>(new WorkspaceNode(null, null, folder.getName()));
+        int classCount = 0;
+        for (Map.Entry<File, Map<String, List<BytecodeSearchIndex.Hit>>> jarEntry : results.entrySet()) {
+            File jar = jarEntry.getKey();
+            Map<String, List<BytecodeSearchIndex.Hit>> classes = jarEntry.getValue();
+            TreeItem<WorkspaceNode> jarItem = new TreeItem<>(new WorkspaceNode(jar, null,
+                    "📦 " + jar.getName() + " (" + classes.size() + " классов)"));
+            for (Map.Entry<String, List<BytecodeSearchIndex.Hit>> classEntry : classes.entrySet()) {
+                String entryName = classEntry.getKey();
+                TreeItem<WorkspaceNode> classItem = new TreeItem<>(new WorkspaceNode(jar, entryName,
+                        entryName.replace(".class", "").replace('/', '.') +
+                                " (" + classEntry.getValue().size() + " совпадений)"));
+                for (BytecodeSearchIndex.Hit hit : classEntry.getValue()) {
+                    classItem.getChildren().add(new TreeItem<>(new WorkspaceNode(jar, entryName, hit.toString())));
+                }
+                jarItem.getChildren().add(classItem);
+            }
+            classCount += classes.size();
+            jarItem.setExpanded(results.size() <= 3);
+            rootItem.getChildren().add(jarItem);
+        }
+
+        TreeView<WorkspaceNode> resultsTree = new TreeView<>(rootItem);
+        resultsTree.setShowRoot(false);
+
+        Label summaryLabel = new Label(results.isEmpty() ? "Ничего не найдено"
+                : "🗄 Найдено в " + results.size() + " JAR, " + classCount + " классах");
+        summaryLabel.setStyle(UIStyles.getSearchResultStyle());
+
+        Runnable open = () -> {
+            TreeItem<WorkspaceNode> selected = resultsTree.getSelectionModel().getSelectedItem();
+            if (selected == null || selected.getValue().classEntry == null) {
+                return;
+            }
+            WorkspaceNode node = selected.getValue();
+            if (!node.jar.equals(ide.getCurrentJar())) {
+                ide.openPlugin(node.jar);
+            }
+            ide.decompileClass(node.classEntry);
+        };
+        resultsTree.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        resultsTree.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+
+        Button openClassBtn = UIStyles.createButton("📖 Открыть класс");
+        openClassBtn.setOnAction(e -> open.run());
+        Button closeBtn = UIStyles.createSmallButton("Закрыть");
+        closeBtn.setOnAction(e -> resultsStage.close());
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.getChildren().addAll(closeBtn, openClassBtn);
+
+        root.getChildren().addAll(summaryLabel, resultsTree, buttonBox);
+        VBox.setVgrow(resultsTree, Priority.ALWAYS);
+
+        resultsStage.setScene(new Scene(root));
+        resultsStage.show();
+    }
+
+    private static class WorkspaceNode {
+        final File jar;
+        // Запись класса в JAR ("a/b/C.class"); null - узел самого JAR
+        final String classEntry;
+        final String label;
+
+        WorkspaceNode(File jar, String classEntry, String label) {
+            this.jar = jar;
+            this.classEntry = classEntry;
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // ========== ИСПОЛЬЗОВАНИЯ ==========
+
+    public void showUsagesDialog() {
+        File currentJar = ide.getCurrentJar();
+        if (currentJar == null) {
+            ide.showWarning("Нет плагина", "Сначала откройте плагин");
+            return;
+        }
+        String classEntry = ide.getCurrentClassEntry();
+        String selection = ide.getCodeArea().getSelectedText().trim();
+
+        ide.updateStatus("Индекс ссылок...");
+        ide.showProgress(true);
+        ide.getExecutor().submit(() -> {
+            try {
+                CrossReferenceIndex index = getReferenceIndex(currentJar);
+                // Иерархия - чтобы обращения через наследников (Sub.foo()) нашлись у Base.foo
+                ClassHierarchyIndex hierarchy = getHierarchyIndex(currentJar);
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.updateStatus("Готов");
+                    openUsagesDialog(index, hierarchy, classEntry, selection);
+                });
+            } catch (Exception e) {
+                System.err.println("❌ Ошибка построения индекса ссылок:");
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.showError("Ошибка индекса ссылок", e.getMessage());
+                });
+            }
+        });
+    }
+
+    private CrossReferenceIndex getReferenceIndex(File jarFile) throws java.io.IOException {
+        CrossReferenceIndex index = referenceIndex;
+        if (index == null || !index.isFor(jarFile)) {
+            index = CrossReferenceIndex.build(jarFile);
+            referenceIndex = index;
+        }
+        return index;
+    }
+
+    private ClassHierarchyIndex getHierarchyIndex(File jarFile) throws java.io.IOException {
+        ClassHierarchyIndex index = hierarchyIndex;
+        if (index == null || !index.isFor(jarFile)) {
+            index = ClassHierarchyIndex.build(jarFile);
+            hierarchyIndex = index;
+        }
+        return index;
+    }
+
+    private void openUsagesDialog(CrossReferenceIndex index, ClassHierarchyIndex hierarchy,
+                                  String classEntry, String selection) {
+        Stage usagesStage = new Stage();
+        usagesStage.initModality(Modality.WINDOW_MODAL);
+        usagesStage.initOwner(ide.getPrimaryStage());
+        usagesStage.setTitle("Использования");
+        usagesStage.setWidth(800);
+        usagesStage.setHeight(600);
+
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(15));
+        root.setStyle(UIStyles.getRootStyle());
+
+        // Пустой фильтр - члены открытого класса, иначе - любые символы JAR и библиотек
+        List<CrossReferenceIndex.Symbol> classMembers = classEntry != null
+                ? index.getDeclaredMembers(classEntry.replace(".class", ""))
+                : new ArrayList<>();
+
+        TextField filterField = UIStyles.createSearchField();
+        filterField.setPromptText("Класс, метод или поле (например, Player.sendMessage)...");
+        filterField.setPrefWidth(Double.MAX_VALUE);
+
+        ListView<CrossReferenceIndex.Symbol> symbolList = new ListView<>();
+        symbolList.setPrefHeight(180);
+        ListView<CrossReferenceIndex.Usage> usageList = new ListView<>();
+        Label summaryLabel = new Label("Выберите символ");
+        summaryLabel.setStyle(UIStyles.getSearchResultStyle());
+
+        filterField.textProperty().addListener((obs, oldText, text) -> {
+            String filter = text.trim();
+            symbolList.getItems().setAll(filter.isEmpty() ? classMembers : index.findSymbols(filter, 200));
+            symbolList.getSelectionModel().selectFirst();
+        });
+
+        symbolList.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, symbol) -> {
+            if (symbol == null) {
+                usageList.getItems().clear();
+                summaryLabel.setText("Выберите символ");
+                return;
+            }
+            List<CrossReferenceIndex.Usage> usages = index.findUsages(symbol, hierarchy);
+            usageList.getItems().setAll(usages);
+            summaryLabel.setText("🔗 " + symbol + ": " + usages.size() + " использований");
+        });
+
+        Runnable open = () -> {
+            CrossReferenceIndex.Usage usage = usageList.getSelectionModel().getSelectedItem();
+            if (usage != null) {
+                usagesStage.close();
+                ide.decompileClass(usage.className + ".class");
+            }
+        };
+        usageList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        usageList.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+
+        Button openClassBtn = UIStyles.createButton("📖 Открыть класс");
+        openClassBtn.setOnAction(e -> open.run());
+        Button closeBtn = UIStyles.createSmallButton("Закрыть");
+        closeBtn.setOnAction(e -> usagesStage.close());
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.getChildren().addAll(closeBtn, openClassBtn);
+
+        root.getChildren().addAll(filterField, symbolList, summaryLabel, usageList, buttonBox);
+        VBox.setVgrow(usageList, Priority.ALWAYS);
+
+        usagesStage.setScene(new Scene(root));
+        // Выделенный в редакторе идентификатор сразу становится запросом
+        if (!selection.isEmpty() && !selection.contains("\n")) {
+            filterField.setText(selection);
+        } else {
+            symbolList.getItems().setAll(classMembers);
+            symbolList.getSelectionModel().selectFirst();
+        }
+        usagesStage.show();
+        filterField.requestFocus();
+    }
+
+    // ========== ИЕРАРХИЯ ТИПОВ ==========
+
+    public void showHierarchyDialog() {
+        File currentJar = ide.getCurrentJar();
+        if (currentJar == null) {
+            ide.showWarning("Нет плагина", "Сначала откройте плагин");
+            return;
+        }
+        String classEntry = ide.getCurrentClassEntry();
+        String selection = ide.getCodeArea().getSelectedText().trim();
+        String initial = !selection.isEmpty() && !selection.contains("\n") ? selection
+                : classEntry != null ? classEntry.replace(".class", "").replace('/', '.') : "";
+
+        ide.updateStatus("Иерархия типов...");
+        ide.showProgress(true);
+        ide.getExecutor().submit(() -> {
+            try {
+                ClassHierarchyIndex ready = getHierarchyIndex(currentJar);
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.updateStatus("Готов");
+                    openHierarchyDialog(ready, initial);
+                });
+            } catch (Exception e) {
+                System.err.println("❌ Ошибка построения иерархии:");
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    ide.showProgress(false);
+                    ide.showError("Ошибка иерархии", e.getMessage());
+                });
+            }
+        });
+    }
+
+    private void openHierarchyDialog(ClassHierarchyIndex index, String initial) {
+        Stage hierarchyStage = new Stage();
+        hierarchyStage.initModality(Modality.WINDOW_MODAL);
+        hierarchyStage.initOwner(ide.getPrimaryStage());
+        hierarchyStage.setTitle("Иерархия типов");
+        hierarchyStage.setWidth(700);
+        hierarchyStage.setHeight(550);
+
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(15));
+        root.setStyle(UIStyles.getRootStyle());
+
+        TextField typeField = UIStyles.createSearchField();
+        typeField.setPromptText("Класс или интерфейс (например, org.bukkit.event.Listener)...");
+        typeField.setPrefWidth(Double.MAX_VALUE);
+        typeField.setText(initial);
+
+        ToggleGroup modeGroup = new ToggleGroup();
+        RadioButton supertypesRadio = new RadioButton("Супертипы");
+        RadioButton subtypesRadio = new RadioButton("Подтипы");
+        RadioButton implementationsRadio = new RadioButton("Реализации");
+        for (RadioButton radio : new RadioButton[]{supertypesRadio, subtypesRadio, implementationsRadio}) {
+            radio.setToggleGroup(modeGroup);
+            radio.setStyle(UIStyles.getCheckboxStyle());
+        }
+        subtypesRadio.setSelected(true);
+        HBox modeBox = new HBox(15, supertypesRadio, subtypesRadio, implementationsRadio);
+
+        ListView<ClassHierarchyIndex.TypeInfo> typeList = new ListView<>();
+        Label summaryLabel = new Label();
+        summaryLabel.setStyle(UIStyles.getSearchResultStyle());
+
+        Runnable refresh = () -> {
+            String name = index.resolveName(typeField.getText());
+            if (name == null) {
+                typeList.getItems().clear();
+                summaryLabel.setText(typeField.getText().trim().isEmpty() ? "Введите имя типа" : "❌ Тип не найден");
+                return;
+            }
+            List<ClassHierarchyIndex.TypeInfo> types = supertypesRadio.isSelected() ? index.getSupertypes(name)
+                    : implementationsRadio.isSelected() ? index.getImplementations(name)
+                    : index.getSubtypes(name);
+            typeList.getItems().setAll(types);
+            summaryLabel.setText("🧬 " + name.replace('/', '.') + ": " + types.size() + " типов");
+        };
+        typeField.textProperty().addListener((obs, oldText, text) -> refresh.run());
+        modeGroup.selectedToggleProperty().addListener((obs, oldVal, newVal) -> refresh.run());
+
+        // Открыть можно только классы самого плагина
+        Runnable open = () -> {
+            ClassHierarchyIndex.TypeInfo type = typeList.getSelectionModel().getSelectedItem();
+            if (type != null && type.inJar) {
+                hierarchyStage.close();
+                ide.decompileClass(type.name + ".class");
+            }
+        };
+        typeList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) open.run();
+        });
+        typeList.setOnKeyPressed(e -> {
+            if (e.getCode() == javafx.scene.input.KeyCode.ENTER) open.run();
+        });
+
+        Button openClassBtn = UIStyles.createButton("📖 Открыть класс");
+        openClassBtn.setOnAction(e -> open.run());
+        Button closeBtn = UIStyles.createSmallButton("Закрыть");
+        closeBtn.setOnAction(e -> hierarchyStage.close());
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.getChildren().addAll(closeBtn, openClassBtn);
+
+        root.getChildren().addAll(typeField, modeBox, summaryLabel, typeList, buttonBox);
+        VBox.setVgrow(typeList, Priority.ALWAYS);
+
+        hierarchyStage.setScene(new Scene(root));
+        refresh.run();
+        hierarchyStage.show();
+        typeField.requestFocus();
     }
 
     public void resetSearch() {
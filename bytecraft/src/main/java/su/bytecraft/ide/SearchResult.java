@@ -1,16 +1,30 @@
 package su.bytecraft.ide;
 
+import su.bytecraft.BytecodeSearchIndex;
+
+import java.util.Collections;
 import java.util.List;
 
 public class SearchResult {
     private final String displayName;
     private final String originalClassName;
     private final List<TextPosition> matches;
+    // Совпадения из индекса байткода (пусто, если искали по декомпилированному тексту)
+    private final List<BytecodeSearchIndex.Hit> hits;
 
     public SearchResult(String displayName, String originalClassName, List<TextPosition> matches) {
         this.displayName = displayName;
         this.originalClassName = originalClassName;
         this.matches = matches;
+        this.hits = Collections.emptyList();
+    }
+
+    public SearchResult(String displayName, String originalClassName,
+                        List<TextPosition> matches, List<BytecodeSearchIndex.Hit> hits) {
+        this.displayName = displayName;
+        this.originalClassName = originalClassName;
+        this.matches = matches;
+        this.hits = hits;
     }
 
     public String getDisplayName() {
@@ -25,13 +39,17 @@ public class SearchResult {
         return matches;
     }
 
+    public List<BytecodeSearchIndex.Hit> getHits() {
+        return hits;
+    }
+
     public int getMatchCount() {
-        return matches.size();
+        return hits.isEmpty() ? matches.size() : hits.size();
     }
 
     @Override
     public String toString() {
-        return displayName + " (" + matches.size() + " совпадений)";
+        return displayName + " (" + getMatchCount() + " совпадений)";
     }
 
     public static class TextPosition {